@@ -0,0 +1,219 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+import java.util.ArrayList;
+
+/**
+ * The shared workings of ProximitySensor and TriggerRegion: keeps the set of
+ * sprites within an area and finds the ones that entered or left it each
+ * cycle from the sprites that moved in the Sectors around the area.
+ *
+ * Sectors keep the moves of the current and the previous cycle, so moves made
+ * after this was evaluated in a cycle are still seen at the next evaluation.
+ * @author Blinz
+ */
+abstract class AreaWatcher {
+
+    private final Class<?> filter;
+    /**
+     * The sprites within the area.
+     */
+    private BaseSprite[] members = new BaseSprite[8];
+    /**
+     * The handles the members had when they entered.
+     */
+    private long[] handles = new long[8];
+    private int count = 0;
+    /**
+     * The position of each member plus one, indexed by the ID in its handle,
+     * 0 for IDs without a member.
+     */
+    private int[] positions = new int[0];
+    /**
+     * The Zone cycle of the last evaluation.
+     */
+    private long lastCycle = -1;
+    /**
+     * Indicates that this has yet to scan every sprite near its area.
+     */
+    private boolean fresh = true;
+
+    /**
+     * Constructor
+     * @param filter the class or interface of the sprites to watch for, null for all
+     */
+    AreaWatcher(final Class<?> filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Gets the number of sprites currently within the area.
+     * @return the number of sprites currently within the area
+     */
+    public final int getCount() {
+        return count;
+    }
+
+    /**
+     * Indicates whether or not the given sprite was within the area at the
+     * last evaluation.
+     * @param sprite the sprite to check for
+     * @return true if the sprite is within the area, false otherwise
+     */
+    public final boolean contains(final BaseSprite sprite) {
+        final int id = sprite.id;
+        return id > -1 && id < positions.length && positions[id] != 0 && members[positions[id] - 1] == sprite;
+    }
+
+    /**
+     * Indicates whether or not the given sprite has moved since the last
+     * evaluation began.
+     * @param sprite the sprite to check
+     * @return true if the sprite may have moved since the last evaluation
+     */
+    final boolean movedSinceLastUpdate(final BaseSprite sprite) {
+        return sprite.movedCycle >= lastCycle;
+    }
+
+    /**
+     * Finds the sprites that entered or left the area since the last evaluation.
+     * @param zoneData the ZoneData of the Zone
+     * @param areaMoved true if the area itself moved since the last evaluation
+     * @param x the x coordinate of the Zone area to search
+     * @param y the y coordinate of the Zone area to search
+     * @param width the width of the Zone area to search
+     * @param height the height of the Zone area to search
+     */
+    final void update(final ZoneData zoneData, final boolean areaMoved,
+            final int x, final int y, final int width, final int height) {
+        final long since = lastCycle;
+        lastCycle = zoneData.zoneCycles;
+        final boolean rescan = fresh || areaMoved;
+        fresh = false;
+
+        //sprites that left the Zone, or moved out of the area, the last member
+        //takes the place of a removed one so go from the end
+        for (int i = count - 1; i > -1; i--) {
+            final BaseSprite sprite = members[i];
+            if (sprite.getHandle() != handles[i]
+                    || ((rescan || sprite.movedCycle >= since) && !covers(sprite))) {
+                removeMember(i);
+                left(sprite);
+            }
+        }
+
+        //sprites that came into the area, sprites are as wide as a Sector at most
+        final int sectorSize = zoneData.getSectorSize();
+        final Sector[][] sectors = zoneData.sectors;
+        final int x1 = Math.max(0, (x - sectorSize) / sectorSize);
+        final int y1 = Math.max(0, (y - sectorSize) / sectorSize);
+        final int x2 = Math.min(sectors.length - 1, (x + width) / sectorSize);
+        final int y2 = Math.min(sectors[0].length - 1, (y + height) / sectorSize);
+        for (int i = x1; i <= x2; i++) {
+            for (int n = y1; n <= y2; n++) {
+                if (rescan) {
+                    final UnorderedList<BaseSprite> list = sectors[i][n].getSprites();
+                    for (int s = 0; s < list.size(); s++) {
+                        check(list.get(s));
+                    }
+                } else {
+                    ArrayList<BaseSprite> list = sectors[i][n].getEarlierMovedSprites();
+                    for (int s = 0; s < list.size(); s++) {
+                        check(list.get(s));
+                    }
+                    list = sectors[i][n].getMovedSprites();
+                    for (int s = 0; s < list.size(); s++) {
+                        check(list.get(s));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Indicates whether or not the given sprite is within the area.
+     * @param sprite the sprite to check
+     * @return true if the sprite is within the area, false otherwise
+     */
+    abstract boolean covers(final BaseSprite sprite);
+
+    /**
+     * Called when a sprite enters the area.
+     * @param sprite the sprite that entered
+     */
+    abstract void entered(final BaseSprite sprite);
+
+    /**
+     * Called when a sprite leaves the area or the Zone.
+     * @param sprite the sprite that left
+     */
+    abstract void left(final BaseSprite sprite);
+
+    /**
+     * Adds the given sprite to the sprites inside if it passes the filter, is
+     * within the area and was not already inside.
+     * @param sprite the sprite to check
+     */
+    private final void check(final BaseSprite sprite) {
+        if (sprite.id != -1 && (filter == null || filter.isInstance(sprite))
+                && !contains(sprite) && covers(sprite)) {
+            addMember(sprite);
+            entered(sprite);
+        }
+    }
+
+    /**
+     * Adds the given sprite to the members.
+     * @param sprite the sprite that entered
+     */
+    private final void addMember(final BaseSprite sprite) {
+        final int id = sprite.id;
+        if (id >= positions.length) {
+            final int[] p = new int[Math.max(id + 1, positions.length * 2)];
+            System.arraycopy(positions, 0, p, 0, positions.length);
+            positions = p;
+        }
+        if (count == members.length) {
+            final BaseSprite[] m = new BaseSprite[count * 2];
+            System.arraycopy(members, 0, m, 0, count);
+            members = m;
+            final long[] h = new long[count * 2];
+            System.arraycopy(handles, 0, h, 0, count);
+            handles = h;
+        }
+        members[count] = sprite;
+        handles[count] = sprite.getHandle();
+        positions[id] = ++count;
+    }
+
+    /**
+     * Removes the member at the given position, the last member takes its place.
+     * @param i the position of the member
+     */
+    private final void removeMember(final int i) {
+        //the sprite may have lost its ID, the handle keeps the one it had
+        positions[(int) handles[i]] = 0;
+        count--;
+        if (i < count) {
+            members[i] = members[count];
+            handles[i] = handles[count];
+            positions[(int) handles[i]] = i + 1;
+        }
+        members[count] = null;
+    }
+}
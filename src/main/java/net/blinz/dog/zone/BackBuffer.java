@@ -0,0 +1,111 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+import net.blinz.core.graphics.Graphics;
+import net.blinz.core.util.Bounds;
+
+/**
+ * An image kept between frames that a Camera draws into, repainting only the
+ * areas of the screen that changed since the last frame before copying the
+ * image to the screen. Views where little moves cost a small fraction of a
+ * full redraw. A BackBuffer should only be used with one Camera at a time.
+ *
+ * The type parameter is the image type of the graphics backend.
+ * @author Blinz
+ */
+public abstract class BackBuffer<I> {
+
+    private I image;
+    private Graphics imageGraphics;
+    private int width, height;
+    /**
+     * The number of the frame last drawn into the image.
+     */
+    private long sequence = 0;
+
+    /**
+     * Creates a new image of the given size.
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return a new image
+     */
+    protected abstract I createImage(final int width, final int height);
+
+    /**
+     * Gets a Graphics object that draws into the given image.
+     * @param image the image to draw into
+     * @return a Graphics object that draws into the given image
+     */
+    protected abstract Graphics getGraphics(final I image);
+
+    /**
+     * Restricts drawing done with the given Graphics object to the given area.
+     * @param g the Graphics object drawing to the image
+     * @param area the area to restrict drawing to
+     */
+    protected abstract void setClip(final Graphics g, final Bounds area);
+
+    /**
+     * Fills the given area of the image with the background.
+     * @param g the Graphics object drawing to the image
+     * @param area the area to clear
+     */
+    protected abstract void clear(final Graphics g, final Bounds area);
+
+    /**
+     * Draws the image to the screen.
+     * @param g the Graphics object with which to draw to the screen
+     * @param image the image
+     */
+    protected abstract void drawImage(final Graphics g, final I image);
+
+    /**
+     * Stub method called when an image is dropped because the Camera was
+     * resized. Implement as needed to release resources held by the image.
+     * @param image the image being dropped
+     */
+    protected void disposeImage(final I image) {
+    }
+
+    /**
+     * Brings the image up to date with the given Scene and draws it to the
+     * screen. Everything is redrawn when the image is new, when the previous
+     * frame of the Scene's Camera was not drawn into it, or when the Scene
+     * requires it.
+     * @param graphics the Graphics object with which to draw to the screen
+     * @param scene the Scene to draw
+     */
+    final void draw(final Graphics graphics, final Scene scene) {
+        boolean full = scene.sequence != sequence + 1;
+        if (image == null || width != scene.width || height != scene.height) {
+            if (image != null) {
+                disposeImage(image);
+            }
+            width = scene.width;
+            height = scene.height;
+            image = createImage(width, height);
+            imageGraphics = getGraphics(image);
+            full = true;
+        }
+        if (scene.sequence != sequence) {
+            scene.repaint(this, imageGraphics, full);
+            sequence = scene.sequence;
+        }
+        drawImage(graphics, image);
+    }
+}
@@ -17,7 +17,6 @@
 package net.blinz.dog.zone;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Vector;
 import net.blinz.core.input.KeyListener;
 import net.blinz.core.input.MouseListener;
@@ -60,7 +59,7 @@ public abstract class BaseCamera extends ZoneObject {
             final UserListenerList ul = userListeners;
             if (ul != null) {
                 final ClickEvent e = new ClickEvent(getUser(), buttonNumber,
-                        cursorX + getX(), cursorY + getY(), clickCount);
+                        toZoneX(cursorX), toZoneY(cursorY), clickCount);
                 ul.buttonClick(e);
                 select(new SelectionEvent(user, buttonNumber, clickCount, cursorX, cursorY));
             }
@@ -70,7 +69,7 @@ public abstract class BaseCamera extends ZoneObject {
         public void buttonPress(int buttonNumber, int cursorX, int cursorY) {
             final UserListenerList ul = userListeners;
             if (ul != null) {
-                final MouseEvent e = new MouseEvent(getUser(), buttonNumber, cursorX + getX(), cursorY + getY());
+                final MouseEvent e = new MouseEvent(getUser(), buttonNumber, toZoneX(cursorX), toZoneY(cursorY));
                 ul.buttonPress(e);
             }
         }
@@ -79,7 +78,7 @@ public abstract class BaseCamera extends ZoneObject {
         public void buttonRelease(int buttonNumber, int cursorX, int cursorY) {
             final UserListenerList ul = userListeners;
             if (ul != null) {
-                final MouseEvent e = new MouseEvent(getUser(), buttonNumber, cursorX + getX(), cursorY + getY());
+                final MouseEvent e = new MouseEvent(getUser(), buttonNumber, toZoneX(cursorX), toZoneY(cursorY));
                 ul.buttonRelease(e);
             }
         }
@@ -88,7 +87,7 @@ public abstract class BaseCamera extends ZoneObject {
         public void wheelScroll(int number, int cursorX, int cursorY) {
             final UserListenerList ul = userListeners;
             if (ul != null) {
-                final MouseWheelEvent e = new MouseWheelEvent(getUser(), number, cursorX + getX(), cursorY + getY());
+                final MouseWheelEvent e = new MouseWheelEvent(getUser(), number, toZoneX(cursorX), toZoneY(cursorY));
                 ul.wheelScroll(e);
             }
         }
@@ -147,10 +146,13 @@ public abstract class BaseCamera extends ZoneObject {
          * Adds sprites new to this Sector that this CameraSector represents to
          * this Camera.
          */
-        private final void addNewSprites() {
-            final Vector<BaseSprite> list = sector.getAddedSprites();
-            for (int n = 0; n < list.size(); n++) {
-                addSprite(list.get(n));
+        private final void addNewSprites(final SectorDigest digest) {
+            if (aggregated) {
+                return;
+            }
+            final BaseSprite[] list = digest.added;
+            for (int n = 0; n < digest.addedCount; n++) {
+                addSprite(list[n]);
             }
         }
 
@@ -159,8 +161,7 @@ public abstract class BaseCamera extends ZoneObject {
          */
         private final void orphanSprites() {
             while (!sprites.isEmpty()) {
-                orphanMap.put(sprites.get(0).getSprite(), sprites.get(0));
-                sprites.remove(0).setOrphaned(true);
+                orphan(sprites.remove(0));
             }
         }
 
@@ -168,20 +169,43 @@ public abstract class BaseCamera extends ZoneObject {
          * Finds, removes, and declares the sprites that should no longer represent
          * this sector.
          */
-        private final void orphanRemovedSprites() {
-            final Vector<BaseSprite> list = sector.getRemovedSprites();
-            for (int n = 0; n < list.size(); n++) {
-                final BaseSprite sprite = list.get(n);
-                for (int i = 0; i < sprites.size(); i++) {
-                    if (sprites.get(i).getSprite() == sprite) {
-                        orphanMap.put(sprites.get(i).getSprite(), sprites.get(i));
-                        sprites.remove(i).setOrphaned(true);
-                        break;
+        private final void orphanRemovedSprites(final SectorDigest digest) {
+            if (aggregated) {
+                return;
+            }
+            final BaseSprite[] list = digest.removed;
+            for (int n = 0; n < digest.removedCount; n++) {
+                final BaseSprite sprite = list[n];
+                final int id = digest.removedIds[n];
+                final CameraSprite cs = id > -1 && id < tracked.length ? tracked[id] : null;
+                if (cs != null && cs.getSprite() == sprite && cs.sectorSlot < sprites.size()
+                        && sprites.get(cs.sectorSlot) == cs) {
+                    orphan(remove(cs.sectorSlot));
+                } else if (id < 0) {
+                    for (int i = 0; i < sprites.size(); i++) {
+                        if (sprites.get(i).getSprite() == sprite) {
+                            orphan(remove(i));
+                            break;
+                        }
                     }
                 }
             }
         }
 
+        /**
+         * Removes the CameraSprite at the given index of this CameraSector.
+         * @param i the index of the CameraSprite
+         * @return the CameraSprite removed
+         */
+        private final CameraSprite remove(final int i) {
+            final CameraSprite cs = sprites.remove(i);
+            //the last CameraSprite takes the place of the removed one
+            if (i < sprites.size()) {
+                sprites.get(i).sectorSlot = i;
+            }
+            return cs;
+        }
+
         /**
          * Adds the given sprite to this CameraSector and to the Camera if necessary.
          * @param sprite the sprite to be added
@@ -189,15 +213,27 @@ public abstract class BaseCamera extends ZoneObject {
         private final void addSprite(final BaseSprite sprite) {
             CameraSprite cs = null;
             //recover the sprite's orphaned representation if it exists
-            cs = orphanMap.remove(sprite);
-            if (cs != null) {
+            final int id = sprite.id;
+            if (id > -1 && id < orphanSlots.length && orphanSlots[id] != null
+                    && orphanSlots[id].getSprite() == sprite) {
+                cs = orphanSlots[id];
+                orphanSlots[id] = null;
                 cs.setOrphaned(false);
             } else {
-                cs = new CameraSprite(sprite);
+                cs = fetchCameraSprite(sprite);
                 me.addSprite(cs);
             }
             //add the sprite to the list representing its Sector
+            cs.sectorSlot = sprites.size();
             sprites.add(cs);
+            if (id > -1) {
+                if (id >= tracked.length) {
+                    final CameraSprite[] t = new CameraSprite[Math.max(id + 1, getData().spriteTable.capacity())];
+                    System.arraycopy(tracked, 0, t, 0, tracked.length);
+                    tracked = t;
+                }
+                tracked[id] = cs;
+            }
         }
 
         /**
@@ -210,6 +246,10 @@ public abstract class BaseCamera extends ZoneObject {
             }
         }
     }
+    /**
+     * The maximum number of unused CameraSprites kept for reuse.
+     */
+    private final static int CAMERA_SPRITE_POOL_CAPACITY = 4096;
     /**
      * Needed because CameraSector confuses its addSprite method with BaseCamera's addSprite method.
      */
@@ -224,9 +264,48 @@ public abstract class BaseCamera extends ZoneObject {
      * Used to keep track of how click inputs affect the selected sprite.
      */
     private final Vector<CameraSector> sectors = new Vector<CameraSector>();
-    private final HashMap<BaseSprite, CameraSprite> orphanMap = new HashMap<BaseSprite, CameraSprite>();
+    /**
+     * The sprites orphaned this round, some of which may since have been
+     * recovered.
+     */
+    private final ArrayList<CameraSprite> orphans = new ArrayList<CameraSprite>();
+    /**
+     * The orphans of this round indexed by sprite ID, for recovery.
+     */
+    private CameraSprite[] orphanSlots = new CameraSprite[0];
+    /**
+     * The CameraSprites in this Camera's CameraSectors indexed by sprite ID.
+     */
+    private CameraSprite[] tracked = new CameraSprite[0];
     private final ArrayList<CameraSprite> orphanList = new ArrayList<CameraSprite>();
+    /**
+     * CameraSprites of sprites that left this Camera, waiting for reuse.
+     */
+    private final ArrayList<CameraSprite> cameraSpritePool = new ArrayList<CameraSprite>();
+    /**
+     * CameraSprites orphaned in the last round. They are held back a round
+     * before reuse because the last Scene generated may still refer to them.
+     */
+    private final ArrayList<CameraSprite> retiredSprites = new ArrayList<CameraSprite>();
     private final Bounds bounds = new Bounds();
+    /**
+     * The area of the Zone in view, the bounds of this Camera scaled by the
+     * inverse of the zoom.
+     */
+    private final Bounds view = new Bounds();
+    private volatile float zoom = 1;
+    private volatile float aggregationZoom = 0.25f;
+    /**
+     * Indicates that this Camera shows aggregates of its Sectors instead of
+     * their sprites.
+     */
+    private boolean aggregated = false;
+    /**
+     * The Zone this Camera is leaving, null if it is not leaving one. A running
+     * Zone has the Camera let go of its Sectors in its next update, on the
+     * thread updating it, and drops it at the start of the following cycle.
+     */
+    private volatile Zone droppedZone = null;
     private User user = new User();
 
     static {
@@ -298,6 +377,61 @@ public abstract class BaseCamera extends ZoneObject {
         return bounds.height;
     }
 
+    /**
+     * Gets the zoom of this Camera, the size things are drawn at relative to
+     * their size in the Zone.
+     * @return the zoom of this Camera
+     */
+    public final float getZoom() {
+        return zoom;
+    }
+
+    /**
+     * Sets the zoom of this Camera. Values below 1 zoom out, showing more of
+     * the Zone in the same space.
+     * @param zoom the new zoom of this Camera, greater than 0
+     */
+    public final void setZoom(final float zoom) {
+        if (zoom > 0) {
+            this.zoom = zoom;
+        }
+    }
+
+    /**
+     * Gets the zoom below which this Camera shows an aggregate of each Sector
+     * instead of the sprites in it.
+     * @return the zoom below which Sectors are aggregated
+     */
+    public final float getAggregationZoom() {
+        return aggregationZoom;
+    }
+
+    /**
+     * Sets the zoom below which this Camera shows an aggregate of each Sector
+     * instead of the sprites in it, so that zoomed out frames cost the same
+     * however many sprites are in view. Defaults to 0.25.
+     * @param aggregationZoom the zoom below which Sectors are aggregated
+     */
+    public final void setAggregationZoom(final float aggregationZoom) {
+        this.aggregationZoom = aggregationZoom;
+    }
+
+    /**
+     * Gets the width of the area of the Zone in view of this Camera.
+     * @return the width of the area of the Zone in view of this Camera
+     */
+    public final int getViewWidth() {
+        return (int) Math.ceil(bounds.width / zoom);
+    }
+
+    /**
+     * Gets the height of the area of the Zone in view of this Camera.
+     * @return the height of the area of the Zone in view of this Camera
+     */
+    public final int getViewHeight() {
+        return (int) Math.ceil(bounds.height / zoom);
+    }
+
     /**
      * Sets the size of this Camera in the Zone.
      * @param width the new width of this Camera
@@ -407,6 +541,18 @@ public abstract class BaseCamera extends ZoneObject {
     protected void update() {
     }
 
+    /**
+     * Stub method called when this Camera is zoomed out past its aggregation
+     * zoom, for each Sector in view, to get the Visual drawn over the Sector in
+     * place of its sprites. Implement as needed, drawing for instance a cluster
+     * icon or a tile shaded by density.
+     * @param aggregate the summary the Sector keeps of its sprites
+     * @return the Visual to draw over the Sector, null to draw nothing
+     */
+    protected Visual getAggregateVisual(final SectorAggregate aggregate) {
+        return null;
+    }
+
     protected void select(final SelectionEvent selection) {
     }
 
@@ -417,12 +563,67 @@ public abstract class BaseCamera extends ZoneObject {
      */
     @Override
     synchronized void dropZone(final Zone zone) {
-        if (getZone() == zone && zone != null) {
+        if (getZone() == zone && zone != null && droppedZone == null) {
             getData().userListeners.checkIn(getUser());
             inputListener = null;
-            getZone().removeCamera(this);
+            droppedZone = zone;
+            synchronized (zone) {
+                //no update will come to let go of the Sectors
+                if (!zone.isRunning()) {
+                    releaseSectors();
+                    finishDrop(zone);
+                }
+            }
+        }
+    }
+
+    /**
+     * Indicates whether or not this Camera is waiting to leave a Zone.
+     * @return true if this Camera is leaving a Zone, false otherwise
+     */
+    final boolean isDropping() {
+        return droppedZone != null;
+    }
+
+    /**
+     * Removes this Camera from the given Zone once it has let go of its Sectors.
+     * @param zone the Zone this Camera is leaving
+     */
+    final synchronized void finishDrop(final Zone zone) {
+        if (droppedZone == zone) {
+            zone.removeCamera(this);
             super.dropZone(zone);
+            droppedZone = null;
+        }
+    }
+
+    /**
+     * Updates this Camera, or lets go of its Sectors if it is leaving its Zone.
+     * Called by the Zone in the Camera update stage.
+     */
+    final void runUpdate() {
+        final Zone zone = droppedZone;
+        if (zone == null) {
+            internalUpdate();
+        } else {
+            releaseSectors();
+            zone.queueCameraRemoval(this);
+        }
+    }
+
+    /**
+     * Lets go of the Sectors so they no longer count this Camera, and of the
+     * CameraSprites tracking their sprites.
+     */
+    private final void releaseSectors() {
+        while (!sectors.isEmpty()) {
+            removeSector(sectors.size() - 1);
         }
+        oldBounds.setBounds(0, 0, 0, 0);
+        collectOrphans();
+        removeOrphanedSprites(orphanList);
+        recycleOrphans();
+        orphanList.clear();
     }
 
     /**
@@ -433,6 +634,90 @@ public abstract class BaseCamera extends ZoneObject {
         updateSprites();
     }
 
+    /**
+     * Adds the CameraSprites that may be visible in the given area to the given
+     * Scene. A sprite belongs to the Sector holding its top left corner, so the
+     * sprites of a Sector entirely within the area are added without testing
+     * them, and only the sprites of Sectors on the edges of the area are tested.
+     * @param scene the Scene to add the sprites to
+     * @param x the x coordinate of the area
+     * @param y the y coordinate of the area
+     * @param width the width of the area
+     * @param height the height of the area
+     */
+    final void addVisibleSprites(final Scene scene, final int x, final int y, final int width, final int height) {
+        final int size = getData().getSectorSize();
+        for (int i = 0; i < sectors.size(); i++) {
+            final CameraSector cs = sectors.get(i);
+            final UnorderedList<CameraSprite> list = cs.sprites;
+            final int sx = cs.sector.getX(), sy = cs.sector.getY();
+            if (sx >= x && sy >= y && sx + size <= x + width && sy + size <= y + height) {
+                for (int n = 0; n < list.size(); n++) {
+                    scene.add(list.get(n));
+                }
+            } else if (Bounds.intersects(sx, sy, 2 * size, 2 * size, x, y, width, height)) {
+                //sprites reach at most a Sector beyond their own
+                for (int n = 0; n < list.size(); n++) {
+                    final CameraSprite s = list.get(n);
+                    if (Bounds.intersects(s.getX(), s.getY(), s.getWidth(), s.getHeight(), x, y, width, height)) {
+                        scene.add(s);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds an aggregate for each non-empty Sector intersecting the given area
+     * to the given Scene, drawn over the Sector on the top layer.
+     * @param scene the Scene to add the aggregates to
+     * @param x the x coordinate of the area
+     * @param y the y coordinate of the area
+     * @param width the width of the area
+     * @param height the height of the area
+     */
+    final void addVisibleAggregates(final Scene scene, final int x, final int y, final int width, final int height) {
+        final int size = getData().getSectorSize();
+        for (int i = 0; i < sectors.size(); i++) {
+            final Sector sector = sectors.get(i).sector;
+            final SectorAggregate aggregate = sector.getAggregate();
+            if (aggregate.getPopulation() > 0
+                    && Bounds.intersects(sector.getX(), sector.getY(), size, size, x, y, width, height)) {
+                final Visual visual = getAggregateVisual(aggregate);
+                if (visual != null) {
+                    scene.add(visual, sector.getX(), sector.getY(), size, size, 49);
+                }
+            }
+        }
+    }
+
+    /**
+     * Indicates whether or not this Camera shows aggregates of its Sectors
+     * instead of their sprites.
+     * @return true if this Camera shows aggregates, false otherwise
+     */
+    final boolean isAggregated() {
+        return aggregated;
+    }
+
+    /**
+     * Gets the x coordinate in the Zone of the given x coordinate on the screen.
+     * @param x the x coordinate on the screen
+     * @return the x coordinate in the Zone
+     */
+    final int toZoneX(final int x) {
+        return getX() + (int) (x / zoom);
+    }
+
+    /**
+     * Gets the y coordinate in the Zone of the given y coordinate on the screen.
+     * @param y the y coordinate on the screen
+     * @return the y coordinate in the Zone
+     */
+    final int toZoneY(final int y) {
+        return getY() + (int) (y / zoom);
+    }
+
     /**
      * Passes in a CameraSprite to add as the implementation needs.
      * @param sprite the sprite to add
@@ -440,7 +725,9 @@ public abstract class BaseCamera extends ZoneObject {
     abstract void addSprite(final CameraSprite sprite);
 
     /**
-     * Method indicating the need to remove Sectorless sprites.
+     * Removes the given CameraSprites, whose sprites have left this Camera's
+     * Sectors, as the implementation needs.
+     * @param orphans the CameraSprites to remove, each listed once
      */
     abstract void removeOrphanedSprites(final ArrayList<CameraSprite> orphans);
 
@@ -450,8 +737,11 @@ public abstract class BaseCamera extends ZoneObject {
      */
     private final void addSector(final Sector sector) {
         final CameraSector cs = new CameraSector(sector);
-        cs.addSprites();
+        if (!aggregated) {
+            cs.addSprites();
+        }
         sectors.add(cs);
+        sector.addCamera();
     }
 
     /**
@@ -459,7 +749,9 @@ public abstract class BaseCamera extends ZoneObject {
      * @param sectorIndex the location of the Sector in the sectors list
      */
     private final void removeSector(final int sectorIndex) {
-        sectors.remove(sectorIndex).orphanSprites();
+        final CameraSector cs = sectors.remove(sectorIndex);
+        cs.orphanSprites();
+        cs.sector.removeCamera();
     }
 
     /**
@@ -469,26 +761,40 @@ public abstract class BaseCamera extends ZoneObject {
         //manage sprites for current sectors
         //find and declare orphaned sprites
         for (int i = 0; i < sectors.size(); i++) {
-            sectors.get(i).orphanRemovedSprites();
+            sectors.get(i).orphanRemovedSprites(sectors.get(i).sector.getDigest());
         }
 
         //add new sprites
         for (int i = 0; i < sectors.size(); i++) {
-            sectors.get(i).addNewSprites();
+            sectors.get(i).addNewSprites(sectors.get(i).sector.getDigest());
+        }
+
+        //switch between tracking sprites and aggregating the Sectors
+        final boolean aggregate = zoom < aggregationZoom;
+        if (aggregate != aggregated) {
+            aggregated = aggregate;
+            for (int i = 0; i < sectors.size(); i++) {
+                if (aggregate) {
+                    sectors.get(i).orphanSprites();
+                } else {
+                    sectors.get(i).addSprites();
+                }
+            }
         }
 
         //update Sectors
-        if (bounds.x != oldBounds.x || bounds.y != oldBounds.y
-                || bounds.width != oldBounds.width || bounds.height != oldBounds.height) {
+        view.setBounds(bounds.x, bounds.y, getViewWidth(), getViewHeight());
+        if (view.x != oldBounds.x || view.y != oldBounds.y
+                || view.width != oldBounds.width || view.height != oldBounds.height) {
             //update the Sectors
             //remove old Sectors
             for (int i = 0; i < sectors.size(); i++) {
-                if (!sectors.get(i).sector.withinSpriteRange(bounds)) {
+                if (!sectors.get(i).sector.withinSpriteRange(view)) {
                     removeSector(i);
                     i--;
                 }
             }
-            if (bounds.width > 0 && bounds.height > 0) {
+            if (view.width > 0 && view.height > 0) {
                 //add new Sectors
                 final int x1 = sector1().leftNeighbor != null ? sector1().leftNeighbor.getX() : 0;
                 final int y1 = sector1().topNeighbor != null ? sector1().topNeighbor.getY() : 0;
@@ -505,12 +811,87 @@ public abstract class BaseCamera extends ZoneObject {
                 }
             }
             //update oldBounds
-            oldBounds.setBounds(bounds);
+            oldBounds.setBounds(view);
         }
 
+        collectOrphans();
         removeOrphanedSprites(orphanList);
+        recycleOrphans();
         orphanList.clear();
-        orphanMap.clear();
+    }
+
+    /**
+     * Gets a CameraSprite for the given sprite, reusing a retired one if possible.
+     * @param sprite the sprite to be represented
+     * @return a CameraSprite representing the given sprite
+     */
+    private final CameraSprite fetchCameraSprite(final BaseSprite sprite) {
+        if (cameraSpritePool.isEmpty()) {
+            return new CameraSprite(sprite);
+        }
+        final CameraSprite cs = cameraSpritePool.remove(cameraSpritePool.size() - 1);
+        cs.reset(sprite);
+        return cs;
+    }
+
+    /**
+     * Moves the orphans of this round that were not recovered to the orphan
+     * list, once each.
+     */
+    private final void collectOrphans() {
+        for (int i = 0; i < orphans.size(); i++) {
+            final CameraSprite cs = orphans.get(i);
+            if (cs.spriteId > -1 && orphanSlots[cs.spriteId] == cs) {
+                orphanSlots[cs.spriteId] = null;
+            }
+            //a CameraSprite orphaned twice in a round is listed twice
+            if (cs.isOrphaned()) {
+                cs.setOrphaned(false);
+                orphanList.add(cs);
+            }
+        }
+        orphans.clear();
+    }
+
+    /**
+     * Moves the CameraSprites retired last round to the pool and retires the
+     * current orphans.
+     */
+    private final void recycleOrphans() {
+        for (int i = 0; i < retiredSprites.size()
+                && cameraSpritePool.size() < CAMERA_SPRITE_POOL_CAPACITY; i++) {
+            cameraSpritePool.add(retiredSprites.get(i));
+        }
+        retiredSprites.clear();
+        for (int i = 0; i < orphanList.size(); i++) {
+            //a selected sprite's wrapper is still referenced as the selection
+            if (!orphanList.get(i).isSelected()) {
+                retiredSprites.add(orphanList.get(i));
+            }
+        }
+    }
+
+    /**
+     * Declares the given CameraSprite an orphan, it will be removed at the end
+     * of the round unless its sprite is recovered by another CameraSector.
+     * @param cs the CameraSprite to orphan
+     */
+    private final void orphan(final CameraSprite cs) {
+        cs.setOrphaned(true);
+        orphans.add(cs);
+        final int id = cs.spriteId;
+        if (id < 0) {
+            return;
+        }
+        if (id < tracked.length && tracked[id] == cs) {
+            tracked[id] = null;
+        }
+        if (id >= orphanSlots.length) {
+            final CameraSprite[] slots = new CameraSprite[Math.max(id + 1, getData().spriteTable.capacity())];
+            System.arraycopy(orphanSlots, 0, slots, 0, orphanSlots.length);
+            orphanSlots = slots;
+        }
+        orphanSlots[id] = cs;
     }
 
     /**
@@ -518,7 +899,7 @@ public abstract class BaseCamera extends ZoneObject {
      * @return Sector of the upper left hand corner of this Camera.
      */
     private final Sector sector1() {
-        return getData().getSectorOfSafe(bounds.x, bounds.y);
+        return getData().getSectorOfSafe(view.x, view.y);
     }
 
     /**
@@ -526,6 +907,6 @@ public abstract class BaseCamera extends ZoneObject {
      * @return Sector of the lower right hand corner of this Camera.
      */
     private final Sector sector2() {
-        return getData().getSectorOfSafe(bounds.x2(), bounds.y2());
+        return getData().getSectorOfSafe(view.x2(), view.y2());
     }
 }
@@ -16,6 +16,8 @@
  */
 package net.blinz.dog.zone;
 
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import net.blinz.core.graphics.Graphics;
 import net.blinz.core.util.Bounds;
 import net.blinz.core.util.Position3D;
@@ -34,6 +36,94 @@ import net.blinz.dog.util.User;
  */
 public abstract class BaseSprite extends ZoneObject {
 
+    /**
+     * Swaps the head of the mailbox without locking.
+     */
+    private final static AtomicReferenceFieldUpdater<BaseSprite, Message> MAILBOX =
+            AtomicReferenceFieldUpdater.newUpdater(BaseSprite.class, Message.class, "mailbox");
+    /**
+     * Clears updatingSector only if it still refers to the Sector clearing it.
+     */
+    final static AtomicReferenceFieldUpdater<BaseSprite, Sector> UPDATING_SECTOR =
+            AtomicReferenceFieldUpdater.newUpdater(BaseSprite.class, Sector.class, "updatingSector");
+    /**
+     * The value of sleep for a sprite that is not sleeping.
+     */
+    final static byte AWAKE = 0;
+    /**
+     * The ID of the TimingWheel this sprite is sleeping on, AWAKE if it is not.
+     */
+    byte sleep = AWAKE;
+    /**
+     * The cycle or time at which this sprite is to wake, depending on its wheel.
+     */
+    long wakeTick;
+    /**
+     * The Sector whose updating list holds this sprite, null if none does.
+     */
+    volatile Sector updatingSector;
+    /**
+     * The Zone time at which this sprite was last updated, used to give
+     * ElapsedUpdatingSprites the time passed since.
+     */
+    long lastUpdateTime;
+
+    /**
+     * Indicates that this sprite is deleted and waiting in its Zone's SpritePool.
+     */
+    boolean pooled = false;
+    /**
+     * The index of this sprite in its Sector's member list, -1 if it has none.
+     */
+    int sectorIndex = -1;
+    /**
+     * The index of this sprite in its Sector's CollidableSprite list, -1 if it has none.
+     */
+    int collidableIndex = -1;
+    /**
+     * The ID of this sprite in its Zone's SpriteTable, -1 if it has none.
+     */
+    int id = -1;
+    /**
+     * The generation of this sprite's ID when it was assigned.
+     */
+    int generation;
+    /**
+     * The tag SpriteIndexes this sprite is in, null if it has no tags.
+     */
+    private ArrayList<SpriteIndex<BaseSprite>> tags;
+    /**
+     * The tags given to this sprite before it had an ID, indexed when it is
+     * registered with its Zone, null if there are none.
+     */
+    private ArrayList<String> pendingTags;
+    /**
+     * The position this sprite moves to when its Zone commits the positions
+     * staged during the update, only valid while staged is true.
+     */
+    int stagedX, stagedY;
+    /**
+     * Indicates that this sprite has a staged position waiting to be committed.
+     */
+    boolean staged = false;
+    /**
+     * The last cycle in which this sprite moved or changed Sector, only kept
+     * while its Zone has ProximitySensors or TriggerRegions.
+     */
+    long movedCycle = -1;
+    /**
+     * The Sector this sprite was last recorded as moved in.
+     */
+    private Sector movedSector;
+    /**
+     * The Messages posted to this sprite, newest first, null if there are none.
+     */
+    private volatile Message mailbox;
+    /**
+     * The last cycle in which a Sector delivered its Broadcasts to this sprite.
+     */
+    private long broadcastCycle = -1;
+
     /**
      * Gets the maximum width for a sprite.
      * return the maximum width for a sprite
@@ -59,6 +149,99 @@ public abstract class BaseSprite extends ZoneObject {
         getData().spritesToDelete.add(this);
     }
 
+    /**
+     * Gets the ID of this sprite. IDs are small and dense, so they can index
+     * arrays, and are reused by other sprites after this one leaves its Zone.
+     * @return the ID of this sprite, -1 if it is not in a Zone
+     */
+    public final int getId() {
+        return id;
+    }
+
+    /**
+     * Gets a handle to this sprite, which can be resolved with Zone.getSprite
+     * until this sprite leaves its Zone, even if its ID is reused.
+     * @return a handle to this sprite, -1 if it is not in a Zone
+     */
+    public final long getHandle() {
+        return id == -1 ? SpriteTable.NO_HANDLE : ((long) generation << 32) | id;
+    }
+
+    /**
+     * Tags this sprite, so it can be found through Zone.getTaggedSprites. Tags
+     * are dropped when this sprite is deleted. Tags given before this sprite
+     * is in a Zone, such as while it is queued or from init(), are kept until
+     * it enters one.
+     * @param tag the tag
+     */
+    public final synchronized void addTag(final String tag) {
+        if (id == -1) {
+            if (pendingTags == null) {
+                pendingTags = new ArrayList<String>(2);
+            }
+            if (!pendingTags.contains(tag)) {
+                pendingTags.add(tag);
+            }
+            return;
+        }
+        final SpriteIndex<BaseSprite> index = getData().getTagIndex(tag);
+        if (index.add(this)) {
+            if (tags == null) {
+                tags = new ArrayList<SpriteIndex<BaseSprite>>(2);
+            }
+            tags.add(index);
+        }
+    }
+
+    /**
+     * Removes the given tag from this sprite.
+     * @param tag the tag
+     */
+    public final synchronized void removeTag(final String tag) {
+        if (id == -1) {
+            if (pendingTags != null) {
+                pendingTags.remove(tag);
+            }
+            return;
+        }
+        final SpriteIndex<BaseSprite> index = getData().findTagIndex(tag);
+        if (index != null && index.remove(this)) {
+            tags.remove(index);
+        }
+    }
+
+    /**
+     * Indicates whether or not this sprite carries the given tag.
+     * @param tag the tag
+     * @return true if this sprite carries the given tag, false otherwise
+     */
+    public final synchronized boolean hasTag(final String tag) {
+        if (id == -1) {
+            return pendingTags != null && pendingTags.contains(tag);
+        }
+        final SpriteIndex<BaseSprite> index = getData().findTagIndex(tag);
+        return index != null && index.contains(this);
+    }
+
+    /**
+     * Indicates whether or not this sprite is sleeping.
+     * @return true if this sprite is sleeping, false otherwise
+     */
+    public final boolean isSleeping() {
+        return sleep != AWAKE;
+    }
+
+    /**
+     * Wakes this sprite if it is sleeping, it will be updated again from the
+     * next cycle on.
+     */
+    public final void wake() {
+        if (sleep != AWAKE) {
+            sleep = AWAKE;
+            getData().getSectorOf(getX(), getY()).queueWokenSprite(this);
+        }
+    }
+
     /**
      * This sprite will now listen for input from the given User.
      * @param user the User to listen to
@@ -198,6 +381,10 @@ public abstract class BaseSprite extends ZoneObject {
         } else if (x + getWidth() > zoneData.getZoneWidth()) {
             x = zoneData.getZoneWidth() - getWidth();
         }
+        if (zoneData.doubleBuffered) {
+            stage(x, getNextY());
+            return;
+        }
         final Sector otl = zoneData.getSectorOf(getX(), getY());
         final Sector ntl = zoneData.getSectorOf(x, getY());
         if (otl != ntl) {
@@ -205,6 +392,7 @@ public abstract class BaseSprite extends ZoneObject {
             ntl.addSprite(this);
         }
         updateX(x);
+        noteMoved(zoneData);
     }
 
     /**
@@ -221,6 +409,10 @@ public abstract class BaseSprite extends ZoneObject {
         } else if (y + getHeight() > zoneData.getZoneHeight()) {
             y = zoneData.getZoneHeight() - getHeight();
         }
+        if (zoneData.doubleBuffered) {
+            stage(getNextX(), y);
+            return;
+        }
         final Sector otl = getData().getSectorOf(getX(), getY());
         final Sector ntl = getData().getSectorOf(getX(), y);
         if (otl != ntl) {
@@ -228,6 +420,7 @@ public abstract class BaseSprite extends ZoneObject {
             ntl.addSprite(this);
         }
         updateY(y);
+        noteMoved(getData());
     }
 
     /**
@@ -235,9 +428,64 @@ public abstract class BaseSprite extends ZoneObject {
      * @param x the new x coordinate of this sprite
      * @param y the new y coordinate of this sprite
      */
-    public final void setPosition(final int x, final int y) {
-        setX(x);
-        setY(y);
+    public final void setPosition(int x, int y) {
+        final ZoneData zoneData = getData();
+
+        //ensure the new location is within bounds
+        if (x < 0) {
+            x = 0;
+        } else if (x + getWidth() > zoneData.getZoneWidth()) {
+            x = zoneData.getZoneWidth() - getWidth();
+        }
+        if (y < 0) {
+            y = 0;
+        } else if (y + getHeight() > zoneData.getZoneHeight()) {
+            y = zoneData.getZoneHeight() - getHeight();
+        }
+        if (zoneData.doubleBuffered) {
+            stage(x, y);
+            return;
+        }
+        moveTo(x, y);
+    }
+
+    /**
+     * Gets the x coordinate this sprite will have after the current cycle. In
+     * a double buffered Zone this includes moves made during the update that
+     * have yet to be committed.
+     * @return the x coordinate this sprite will have after the current cycle
+     */
+    public final int getNextX() {
+        return staged ? stagedX : getX();
+    }
+
+    /**
+     * Gets the y coordinate this sprite will have after the current cycle. In
+     * a double buffered Zone this includes moves made during the update that
+     * have yet to be committed.
+     * @return the y coordinate this sprite will have after the current cycle
+     */
+    public final int getNextY() {
+        return staged ? stagedY : getY();
+    }
+
+    /**
+     * Moves this sprite to the given coordinates, which must already be within
+     * the bounds of the Zone, checking only once whether it changed Sectors.
+     * @param x the new x coordinate of this sprite
+     * @param y the new y coordinate of this sprite
+     */
+    final void moveTo(final int x, final int y) {
+        final ZoneData zoneData = getData();
+        final Sector otl = zoneData.getSectorOf(getX(), getY());
+        final Sector ntl = zoneData.getSectorOf(x, y);
+        if (otl != ntl) {
+            otl.removeSprite(this);
+            ntl.addSprite(this);
+        }
+        updateX(x);
+        updateY(y);
+        noteMoved(zoneData);
     }
 
     /**
@@ -267,12 +515,78 @@ public abstract class BaseSprite extends ZoneObject {
     }
 
     /**
-     * 
-     * @param message
+     * Stops the update methods of this UpdatingSprite from being called until
+     * the given Zone cycle. Sleeping sprites cost nothing per cycle. Calling
+     * this again replaces the previous wake up.
+     * @param cycle the Zone cycle in which this sprite is to be updated again
+     */
+    protected final void sleepUntilCycle(final long cycle) {
+        sleep(getData().cycleWheel, cycle);
+    }
+
+    /**
+     * Stops the update methods of this UpdatingSprite from being called until
+     * the Zone time reaches the given value. Sleeping sprites cost nothing per
+     * cycle. Calling this again replaces the previous wake up.
+     * @param time the Zone time in milliseconds at which this sprite is to be updated again
+     */
+    protected final void sleepUntil(final long time) {
+        sleep(getData().timeWheel, time);
+    }
+
+    /**
+     * Stub method for receiving messages as Strings.
+     * @param message the message
+     * @deprecated implement MessageReceiver and send typed Messages instead
      */
+    @Deprecated
     protected void recieveMessage(final String message) {
     }
 
+    /**
+     * Posts the given Message to the sprite the given handle refers to. The
+     * Message is dropped if the sprite has left its Zone or does not accept it.
+     * @param handle the handle of the recipient
+     * @param message the message
+     * @return true if the message was posted, false if it was dropped
+     */
+    protected final boolean sendMessage(final long handle, final Message message) {
+        return getData().postMessage(handle, message);
+    }
+
+    /**
+     * Gets a Message of the given class, reusing a delivered one if the class
+     * has a message pool capacity.
+     * @param messageClass the class of the message, must have a no argument constructor
+     * @return a message of the given class, null if it could not be instantiated
+     */
+    protected final <T extends Message> T obtainMessage(final Class<T> messageClass) {
+        return getData().messagePool.obtain(messageClass);
+    }
+
+    /**
+     * Stub method called with the messages broadcast to an area this sprite is
+     * in. Called at the start of the update of this sprite's Sector, on the
+     * thread updating it. A sprite receives the Broadcasts of one Sector per
+     * cycle, so moving into a Sector that has yet to update does not deliver
+     * the same Broadcast again. Implement as needed.
+     * @param message the message
+     */
+    protected void receiveBroadcast(final Object message) {
+    }
+
+    /**
+     * Broadcasts the given message to the sprites within the given distance of
+     * the center of this sprite.
+     * @param message the message
+     * @param radius the distance from the center of this sprite
+     * @param filter the class or interface of the sprites to deliver to, null for all
+     */
+    protected final void broadcast(final Object message, final int radius, final Class<?> filter) {
+        final int cx = getX() + getWidth() / 2, cy = getY() + getHeight() / 2;
+        new Broadcast(message, cx - radius, cy - radius, 2 * radius, 2 * radius, radius, filter).post(getData());
+    }
+
     /**
      * A stub method for listening to clicks. Implement as needed.
      * @param event contains data about the input
@@ -330,6 +644,29 @@ public abstract class BaseSprite extends ZoneObject {
         getData().addSprite(sprite);
     }
 
+    /**
+     * Adds a sprite of the given class to this sprite's Zone at the given
+     * location. If the class implements RecyclableSprite a previously deleted
+     * sprite of the class is reused when available.
+     * @param spriteClass the class of the sprite, must have a no argument constructor
+     * @param x the x coordinate of the sprite
+     * @param y the y coordinate of the sprite
+     * @return the sprite added, null if the class could not be instantiated
+     */
+    protected final <T extends BaseSprite> T addSpriteToZone(final Class<T> spriteClass, final int x, final int y) {
+        return getData().addSprite(spriteClass, x, y);
+    }
+
+    /**
+     * Indicates whether or not this sprite completely covers its bounds when
+     * drawn, so that anything beneath it need not be drawn. Called once per
+     * frame the sprite is visible by the thread updating the Camera.
+     * @return true if this sprite is opaque over its bounds, false otherwise
+     */
+    protected boolean isOpaque() {
+        return false;
+    }
+
     /**
      * Gets the name assigned to this sprite as a String.
      * @return the name assigned to this sprite as a String
@@ -340,6 +677,134 @@ public abstract class BaseSprite extends ZoneObject {
 
     protected abstract void draw(final Graphics g, final Bounds bounds);
 
+    /**
+     * Records that this sprite is having Broadcasts delivered in the given cycle.
+     * @param cycle the current Zone cycle
+     * @return true if no Sector has delivered Broadcasts to this sprite in the
+     * given cycle yet, false otherwise
+     */
+    final synchronized boolean markBroadcastCycle(final long cycle) {
+        if (broadcastCycle == cycle) {
+            return false;
+        }
+        broadcastCycle = cycle;
+        return true;
+    }
+
+    /**
+     * Indexes the tags given to this sprite before it had an ID. Called once
+     * this sprite has been given its ID.
+     */
+    final synchronized void indexPendingTags() {
+        if (pendingTags != null) {
+            final ArrayList<String> pending = pendingTags;
+            pendingTags = null;
+            for (int i = 0; i < pending.size(); i++) {
+                addTag(pending.get(i));
+            }
+        }
+    }
+
+    /**
+     * Removes every tag from this sprite.
+     */
+    final synchronized void clearTags() {
+        pendingTags = null;
+        if (tags != null) {
+            for (int i = 0; i < tags.size(); i++) {
+                tags.get(i).remove(this);
+            }
+            tags = null;
+        }
+    }
+
+    /**
+     * Adds the given Message to the mailbox of this sprite. Safe to call from
+     * any thread.
+     * @param message the message
+     * @return true if the mailbox was empty, false otherwise
+     */
+    final boolean pushMessage(final Message message) {
+        Message head;
+        do {
+            head = mailbox;
+            message.next = head;
+        } while (!MAILBOX.compareAndSet(this, head, message));
+        return head == null;
+    }
+
+    /**
+     * Empties the mailbox of this sprite.
+     * @return the Messages posted to this sprite, oldest first
+     */
+    final Message takeMessages() {
+        Message m = MAILBOX.getAndSet(this, null), reversed = null;
+        while (m != null) {
+            final Message next = m.next;
+            m.next = reversed;
+            reversed = m;
+            m = next;
+        }
+        return reversed;
+    }
+
+    /**
+     * Records this sprite in its Sector's list of moved sprites, if the Zone
+     * has ProximitySensors or TriggerRegions to use it.
+     * @param zoneData the ZoneData of this sprite's Zone
+     */
+    private final void noteMoved(final ZoneData zoneData) {
+        if (zoneData.tracksMoves()) {
+            noteMoved(zoneData.getSectorOf(getX(), getY()), zoneData.zoneCycles);
+        }
+    }
+
+    /**
+     * Records this sprite in the given Sector's list of moved sprites, once
+     * per cycle in each Sector it moves into.
+     * @param sector the Sector this sprite is now in
+     * @param cycle the current Zone cycle
+     */
+    final void noteMoved(final Sector sector, final long cycle) {
+        if (movedCycle != cycle || movedSector != sector) {
+            movedCycle = cycle;
+            movedSector = sector;
+            sector.noteMovedSprite(this);
+        }
+    }
+
+    /**
+     * Stages a move to the given coordinates, to be committed after the update.
+     * @param x the new x coordinate of this sprite
+     * @param y the new y coordinate of this sprite
+     */
+    private final void stage(final int x, final int y) {
+        stagedX = x;
+        stagedY = y;
+        if (!staged) {
+            staged = true;
+            getData().getSectorOf(getX(), getY()).stageSprite(this);
+        }
+    }
+
+    /**
+     * Puts this sprite to sleep on the given TimingWheel.
+     * @param wheel the TimingWheel to wake this sprite
+     * @param tick the cycle or time at which to wake
+     */
+    private final void sleep(final TimingWheel wheel, final long tick) {
+        if (!(this instanceof UpdatingSprite) || sectorIndex == -1) {
+            return;
+        }
+        final boolean wasAwake = sleep == AWAKE;
+        wakeTick = tick;
+        sleep = wheel.getID();
+        wheel.schedule(this);
+        if (wasAwake) {
+            getData().getSectorOf(getX(), getY()).sleepSprite((UpdatingSprite) this);
+        }
+    }
+
     /**
      * Updates the width of this sprite to that given.
      * @param width the new width of this sprite
@@ -0,0 +1,102 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+import net.blinz.core.util.Bounds;
+
+/**
+ * A message posted to the sprites within an area of a Zone. The same Broadcast
+ * is queued in the mailbox of every Sector the area touches, and each Sector
+ * delivers it to its own sprites that are within the area.
+ * @author Blinz
+ */
+final class Broadcast {
+
+    private final Object message;
+    private final int x, y, width, height;
+    /**
+     * The radius around the center of the area, -1 if the area is a rectangle.
+     */
+    private final int radius;
+    private final Class<?> filter;
+
+    /**
+     * Constructor
+     * @param message the message
+     * @param x the x coordinate of the area
+     * @param y the y coordinate of the area
+     * @param width the width of the area
+     * @param height the height of the area
+     * @param radius the radius around the center of the area, -1 for the whole rectangle
+     * @param filter the class or interface of the sprites to deliver to, null for all
+     */
+    Broadcast(final Object message, final int x, final int y, final int width, final int height,
+            final int radius, final Class<?> filter) {
+        this.message = message;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.radius = radius;
+        this.filter = filter;
+    }
+
+    /**
+     * Posts this Broadcast to the mailboxes of the Sectors that may hold
+     * sprites within its area.
+     * @param zoneData the ZoneData of the Zone
+     */
+    final void post(final ZoneData zoneData) {
+        //sprites are as wide as a Sector at most
+        final int sectorSize = zoneData.getSectorSize();
+        final Sector[][] sectors = zoneData.sectors;
+        final int x1 = Math.max(0, (x - sectorSize) / sectorSize);
+        final int y1 = Math.max(0, (y - sectorSize) / sectorSize);
+        final int x2 = Math.min(sectors.length - 1, (x + width) / sectorSize);
+        final int y2 = Math.min(sectors[0].length - 1, (y + height) / sectorSize);
+        for (int i = x1; i <= x2; i++) {
+            for (int n = y1; n <= y2; n++) {
+                sectors[i][n].postBroadcast(this);
+            }
+        }
+    }
+
+    /**
+     * Delivers the message to the given sprite if it passes the filter and is
+     * within the area.
+     * @param sprite the sprite to deliver to
+     */
+    final void deliver(final BaseSprite sprite) {
+        if (filter != null && !filter.isInstance(sprite)) {
+            return;
+        }
+        if (radius < 0) {
+            if (!Bounds.intersects(x, y, width, height,
+                    sprite.getX(), sprite.getY(), sprite.getWidth(), sprite.getHeight())) {
+                return;
+            }
+        } else {
+            final int cx = x + radius, cy = y + radius;
+            final long dx = Math.max(0, Math.max(sprite.getX() - cx, cx - (sprite.getX() + sprite.getWidth())));
+            final long dy = Math.max(0, Math.max(sprite.getY() - cy, cy - (sprite.getY() + sprite.getHeight())));
+            if (dx * dx + dy * dy > (long) radius * radius) {
+                return;
+            }
+        }
+        sprite.receiveBroadcast(message);
+    }
+}
@@ -18,6 +18,7 @@ package net.blinz.dog.zone;
 
 import java.util.ArrayList;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
 import net.blinz.core.graphics.Graphics;
 import net.blinz.core.util.Bounds;
 import net.blinz.dog.util.User;
@@ -32,11 +33,43 @@ import net.blinz.dog.zone.SelectableSprite.SelectionResponse;
 public class Camera extends BaseCamera {
 
     private final Vector<SelectionEvent> selections = new Vector<SelectionEvent>();
-    private final Vector<CameraSprite> spriteList = new Vector<CameraSprite>();
+    /**
+     * The CameraSprites of this Camera, bucketed by the layer they had when
+     * they were added.
+     */
+    private final ArrayList<CameraSprite>[] spriteLayers = new ArrayList[50];
     private CameraSprite selected;
-    private Scene scene = new Scene();
-    private Scene swap1 = new Scene();
-    private Scene swap2 = new Scene();
+    /**
+     * The mask of the Scene index in middle.
+     */
+    private final static int INDEX = 3;
+    /**
+     * Set in middle when it holds a frame the renderer has yet to take.
+     */
+    private final static int FRESH = 4;
+    /**
+     * The triple buffer of Scenes. The simulation builds the back Scene, the
+     * renderer draws the front Scene, and they exchange them through the
+     * middle one without ever waiting on each other.
+     */
+    private final Scene[] scenes = {new Scene(), new Scene(), new Scene()};
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;
+    private int front = 2;
+    private long frameSequence = 0;
+    private long drawnSequence = 0;
+    private long droppedFrames = 0;
+    /**
+     * The CameraSprites in the last Scene generated, kept to find what left it.
+     */
+    private final ArrayList<CameraSprite> shownSprites = new ArrayList<CameraSprite>();
+    /**
+     * The x, y, x2 and y2 of the area covered by particles in the last Scene.
+     */
+    private final int[] shownParticles = {0, 0, 0, 0};
+    private long shownStamp = 0;
+    private int shownX, shownY, shownWidth, shownHeight;
+    private float shownScale = 1;
 
     /**
      * Constructor
@@ -51,6 +84,9 @@ public class Camera extends BaseCamera {
      */
     public Camera(final User user) {
         super(user);
+        for (int i = 0; i < spriteLayers.length; i++) {
+            spriteLayers[i] = new ArrayList<CameraSprite>();
+        }
     }
 
     @Override
@@ -63,12 +99,38 @@ public class Camera extends BaseCamera {
      * @param graphics the Graphics object with which this is to be drawn
      */
     public synchronized final void draw(final Graphics graphics) {
-        Scene s = scene;
-        while (!s.lock()) {
-            s = scene;
-        }
-        s.draw(graphics);
-        s.unLock();
+        takeLatestScene();
+        scenes[front].draw(graphics);
+    }
+
+    /**
+     * Draws this Camera through the given BackBuffer, redrawing only the parts
+     * of the view that changed since the frame last drawn into it. A single
+     * given Camera should only be drawn by one thread at a time.
+     * @param graphics the Graphics object with which this is to be drawn
+     * @param buffer the BackBuffer holding the previously drawn frame
+     */
+    public synchronized final void draw(final Graphics graphics, final BackBuffer<?> buffer) {
+        takeLatestScene();
+        buffer.draw(graphics, scenes[front]);
+    }
+
+    /**
+     * Gets the number of the frame last drawn. Frames are numbered from 1 as
+     * this Camera generates them, 0 if none has been drawn.
+     * @return the number of the frame last drawn
+     */
+    public synchronized final long getFrameSequence() {
+        return drawnSequence;
+    }
+
+    /**
+     * Gets the number of frames this Camera generated that were replaced by a
+     * newer frame before they could be drawn.
+     * @return the number of frames dropped
+     */
+    public synchronized final long getDroppedFrames() {
+        return droppedFrames;
     }
 
     @Override
@@ -78,28 +140,22 @@ public class Camera extends BaseCamera {
 
     @Override
     final void addSprite(final CameraSprite cs) {
-        //add the sprite to sprite list at the proper location
-        synchronized (spriteList) {
-            if (spriteList.isEmpty()) {
-                spriteList.add(cs);
-                return;
-            }
-            for (int i = spriteList.size() - 1; i > -1; i--) {
-                if (spriteList.get(i).getLayer() <= cs.getLayer()) {
-                    spriteList.insertElementAt(cs, i + 1);
-                    break;
-                }
-            }
-        }
+        final ArrayList<CameraSprite> list = spriteLayers[(int) cs.getLayer()];
+        cs.listLayer = (int) cs.getLayer();
+        cs.listIndex = list.size();
+        list.add(cs);
     }
 
     @Override
     final void removeOrphanedSprites(final ArrayList<CameraSprite> orphans) {
-        //remove remaining orphans from spriteList
-        for (int i = 0; i < spriteList.size(); i++) {
-            if (spriteList.get(i).isOrphaned()) {
-                spriteList.remove(i);
-                i--;
+        for (int i = 0; i < orphans.size(); i++) {
+            final CameraSprite cs = orphans.get(i);
+            //the last CameraSprite of the layer takes the place of the removed one
+            final ArrayList<CameraSprite> list = spriteLayers[cs.listLayer];
+            final CameraSprite last = list.remove(list.size() - 1);
+            if (last != cs) {
+                list.set(cs.listIndex, last);
+                last.listIndex = cs.listIndex;
             }
         }
     }
@@ -114,19 +170,27 @@ public class Camera extends BaseCamera {
         generateCurrentScene();
     }
 
+    /**
+     * Takes the latest Scene generated as the front Scene if the renderer has
+     * yet to take it, counting the frames dropped before it.
+     */
+    private final void takeLatestScene() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX;
+            final long sequence = scenes[front].sequence;
+            if (drawnSequence != 0) {
+                droppedFrames += sequence - drawnSequence - 1;
+            }
+            drawnSequence = sequence;
+        }
+    }
+
     /**
      * Gets a Scene that is safe to write to.
      * @return a Scene that is safe to write to
      */
     private final Scene getScene() {
-        Scene retval = null;
-        while (retval == null) {
-            if (swap1.lock()) {
-                retval = swap1;
-            } else if (swap2.lock()) {
-                retval = swap2;
-            }
-        }
+        final Scene retval = scenes[back];
         retval.width = getWidth();
         retval.height = getHeight();
         return retval;
@@ -145,15 +209,19 @@ public class Camera extends BaseCamera {
 
 
             CameraSprite newSelected = null;
-            for (int i = spriteList.size() - 1; i > -1; i--) {
-                final BaseSprite s = spriteList.get(i).getSprite();
-                if (Bounds.intersects(s.getX(), s.getY(), s.getWidth(), s.getHeight(), x + getX(), y + getY(), 1, 1)) {
-                    newSelected = spriteList.get(i);
-                    if (newSelected.select(getUser()) == SelectionResponse.ACCEPT) {
-                        selected = newSelected;
-                        break;
-                    } else if (newSelected.select(getUser()) == SelectionResponse.REJECT_STOP) {
-                        break;
+            search:
+            for (int l = spriteLayers.length - 1; l > -1; l--) {
+                final ArrayList<CameraSprite> list = spriteLayers[l];
+                for (int i = list.size() - 1; i > -1; i--) {
+                    final BaseSprite s = list.get(i).getSprite();
+                    if (Bounds.intersects(s.getX(), s.getY(), s.getWidth(), s.getHeight(), toZoneX(x), toZoneY(y), 1, 1)) {
+                        newSelected = list.get(i);
+                        if (newSelected.select(getUser()) == SelectionResponse.ACCEPT) {
+                            selected = newSelected;
+                            break search;
+                        } else if (newSelected.select(getUser()) == SelectionResponse.REJECT_STOP) {
+                            break search;
+                        }
                     }
                 }
             }
@@ -172,17 +240,46 @@ public class Camera extends BaseCamera {
         upcoming.manageSceneSprites();
 
         upcoming.setTranslation(getX(), getY());
+        upcoming.setScale(getZoom());
         upcoming.setSize(getWidth(), getHeight());
-        for (int i = 0; i < spriteList.size(); i++) {
-            final CameraSprite s = spriteList.get(i);
-            if (Bounds.intersects(s.getX(), s.getY(), s.getWidth(), s.getHeight(),
-                    upcoming.translationX, upcoming.translationY, upcoming.width, upcoming.height)) {
-                upcoming.add(s);
+        upcoming.previousStamp = shownStamp;
+        //the retained image cannot be scrolled, so any pan redraws everything,
+        //as does every frame of aggregates
+        upcoming.fullRepaint = shownX != upcoming.translationX || shownY != upcoming.translationY
+                || shownWidth != upcoming.width || shownHeight != upcoming.height
+                || shownScale != upcoming.scale || isAggregated();
+        final int viewWidth = getViewWidth(), viewHeight = getViewHeight();
+        if (isAggregated()) {
+            addVisibleAggregates(upcoming, upcoming.translationX, upcoming.translationY, viewWidth, viewHeight);
+        } else {
+            addVisibleSprites(upcoming, upcoming.translationX, upcoming.translationY, viewWidth, viewHeight);
+        }
+        final Vector<TileLayer<?>> tileLayers = getData().tileLayers;
+        for (int i = 0; i < tileLayers.size(); i++) {
+            tileLayers.get(i).addVisibleChunks(upcoming, upcoming.translationX, upcoming.translationY,
+                    viewWidth, viewHeight);
+        }
+        if (!isAggregated()) {
+            final Vector<ParticleEmitter> emitters = getData().particleEmitters;
+            for (int i = 0; i < emitters.size(); i++) {
+                emitters.get(i).addVisibleParticles(upcoming, upcoming.translationX, upcoming.translationY,
+                        viewWidth, viewHeight);
             }
         }
 
         upcoming.sortLayers();
-        upcoming.unLock();
-        scene = upcoming;
+        upcoming.cullOccluded();
+        upcoming.damageRemovedSprites(shownSprites);
+        upcoming.damageParticles(shownParticles);
+        upcoming.mergeDamage();
+        shownStamp = upcoming.getStamp();
+        shownX = upcoming.translationX;
+        shownY = upcoming.translationY;
+        shownWidth = upcoming.width;
+        shownHeight = upcoming.height;
+        shownScale = upcoming.scale;
+        upcoming.sequence = ++frameSequence;
+        //publish the finished Scene and take back whichever one is not being drawn
+        back = middle.getAndSet(back | FRESH) & INDEX;
     }
 }
@@ -30,6 +30,33 @@ final class CameraSprite {
     private boolean orphan;
     private BaseSprite sprite;
     private boolean isSelected = false;
+    /**
+     * The ID the sprite had when this started representing it. Kept because
+     * the sprite loses its ID when deleted, before its Cameras let it go.
+     */
+    int spriteId;
+    /**
+     * The layer bucket this is stored in by its Camera.
+     */
+    int listLayer;
+    /**
+     * The index of this in its Camera's layer bucket.
+     */
+    int listIndex;
+    /**
+     * The index of this in the list of its Camera's CameraSector.
+     */
+    int sectorSlot;
+    /**
+     * The stamp of the last Scene build this was added to.
+     */
+    long sceneStamp;
+    /**
+     * Where and how the sprite was drawn in the last Scene this was added to.
+     */
+    int shownX, shownY, shownWidth, shownHeight;
+    float shownLayer;
+    Visual shownVisual;
 
     /**
      * Constructor
@@ -38,6 +65,18 @@ final class CameraSprite {
      */
     CameraSprite(final BaseSprite sprite) {
         this.sprite = sprite;
+        spriteId = sprite.id;
+    }
+
+    /**
+     * Points this CameraSprite at a new sprite so that it can be reused.
+     * @param sprite the sprite that this CameraSprite will now represent
+     */
+    final void reset(final BaseSprite sprite) {
+        this.sprite = sprite;
+        spriteId = sprite.id;
+        orphan = false;
+        isSelected = false;
     }
 
     /**
@@ -112,6 +151,23 @@ final class CameraSprite {
         return sprite.getHeight();
     }
 
+    /**
+     * Indicates whether or not the sprite this represents is opaque.
+     * @return true if the sprite this represents is opaque, false otherwise
+     */
+    final boolean isOpaque() {
+        return sprite.isOpaque();
+    }
+
+    /**
+     * Gets the current Visual of the sprite this represents.
+     * @return the current Visual of the sprite this represents, null if it is
+     * to be drawn live
+     */
+    final Visual getVisual() {
+        return sprite instanceof VisualSprite ? ((VisualSprite) sprite).getVisual() : null;
+    }
+
     /**
      * Draws the sprite this represents, draws the selection indicator too if the
      * sprite is selected.
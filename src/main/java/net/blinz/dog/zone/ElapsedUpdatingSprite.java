@@ -0,0 +1,33 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+/**
+ * An UpdatingSprite that can be updated less often while it is far from every
+ * Camera in its Zone. See Zone.setUpdateLevelOfDetail.
+ * @author Blinz
+ */
+public interface ElapsedUpdatingSprite extends UpdatingSprite {
+
+    /**
+     * Invoked in place of update() while this sprite is in a Sector updated at
+     * a reduced rate, once every few cycles rather than every cycle.
+     * @param elapsedTime the Zone time in milliseconds that has passed since
+     * this sprite was last updated, or since it entered the Zone or woke
+     */
+    public void update(final long elapsedTime);
+}
@@ -0,0 +1,32 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+/**
+ * An interface for sprites moved by the Zone according to their Kinematics
+ * instead of by their own update methods. The positions of all KinematicSprites
+ * are integrated in one pass per Sector after the sprites are updated.
+ * @author Blinz
+ */
+public interface KinematicSprite {
+
+    /**
+     * Gets the Kinematics of this sprite. Must always return the same object.
+     * @return the Kinematics of this sprite
+     */
+    public Kinematics getKinematics();
+}
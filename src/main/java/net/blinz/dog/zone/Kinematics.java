@@ -0,0 +1,188 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+/**
+ * The velocity and acceleration of a KinematicSprite, along with how it behaves
+ * at the edges of its Zone. Velocities and accelerations are in pixels per
+ * cycle, fractions of a pixel are carried over to the following cycles.
+ * @author Blinz
+ */
+public final class Kinematics {
+
+    /**
+     * Used to indicate what happens when a sprite reaches the edge of its Zone.
+     */
+    public enum EdgeBehavior {
+
+        /**
+         * Keep the sprite at the edge, its velocity is unchanged.
+         */
+        CLAMP,
+        /**
+         * Keep the sprite at the edge and stop it moving in that direction.
+         */
+        STOP,
+        /**
+         * Reflect the sprite off the edge.
+         */
+        BOUNCE,
+        /**
+         * Delete the sprite.
+         */
+        DELETE;
+    }
+    private float velocityX = 0, velocityY = 0;
+    private float accelerationX = 0, accelerationY = 0;
+    private float remainderX = 0, remainderY = 0;
+    private EdgeBehavior edgeBehavior = EdgeBehavior.CLAMP;
+    /**
+     * The sprite these Kinematics belong to.
+     */
+    BaseSprite sprite;
+    /**
+     * The index of these Kinematics in their Sector's list, -1 if there is none.
+     */
+    int sectorIndex = -1;
+    /**
+     * The last Zone cycle in which these Kinematics were integrated.
+     */
+    long lastIntegrated = -1;
+
+    /**
+     * Sets the velocity.
+     * @param x the distance moved right each cycle
+     * @param y the distance moved down each cycle
+     */
+    public final void setVelocity(final float x, final float y) {
+        velocityX = x;
+        velocityY = y;
+    }
+
+    /**
+     * Gets the distance moved right each cycle.
+     * @return the distance moved right each cycle
+     */
+    public final float getVelocityX() {
+        return velocityX;
+    }
+
+    /**
+     * Gets the distance moved down each cycle.
+     * @return the distance moved down each cycle
+     */
+    public final float getVelocityY() {
+        return velocityY;
+    }
+
+    /**
+     * Sets the acceleration.
+     * @param x the change in the rightward velocity each cycle
+     * @param y the change in the downward velocity each cycle
+     */
+    public final void setAcceleration(final float x, final float y) {
+        accelerationX = x;
+        accelerationY = y;
+    }
+
+    /**
+     * Gets the change in the rightward velocity each cycle.
+     * @return the change in the rightward velocity each cycle
+     */
+    public final float getAccelerationX() {
+        return accelerationX;
+    }
+
+    /**
+     * Gets the change in the downward velocity each cycle.
+     * @return the change in the downward velocity each cycle
+     */
+    public final float getAccelerationY() {
+        return accelerationY;
+    }
+
+    /**
+     * Sets what happens when the sprite reaches the edge of its Zone. Defaults
+     * to CLAMP.
+     * @param edgeBehavior what happens when the sprite reaches the edge of its Zone
+     */
+    public final void setEdgeBehavior(final EdgeBehavior edgeBehavior) {
+        this.edgeBehavior = edgeBehavior;
+    }
+
+    /**
+     * Gets what happens when the sprite reaches the edge of its Zone.
+     * @return what happens when the sprite reaches the edge of its Zone
+     */
+    public final EdgeBehavior getEdgeBehavior() {
+        return edgeBehavior;
+    }
+
+    /**
+     * Moves the sprite by one cycle's worth of velocity, unless it has already
+     * been moved this cycle.
+     * @param zoneData the ZoneData of the sprite's Zone
+     * @param cycle the current Zone cycle
+     */
+    final void integrate(final ZoneData zoneData, final long cycle) {
+        if (lastIntegrated == cycle) {
+            return;
+        }
+        lastIntegrated = cycle;
+        velocityX += accelerationX;
+        velocityY += accelerationY;
+        remainderX += velocityX;
+        remainderY += velocityY;
+        final int dx = (int) remainderX, dy = (int) remainderY;
+        if (dx == 0 && dy == 0) {
+            return;
+        }
+        remainderX -= dx;
+        remainderY -= dy;
+
+        int x = sprite.getX() + dx, y = sprite.getY() + dy;
+        final int maxX = zoneData.getZoneWidth() - sprite.getWidth();
+        final int maxY = zoneData.getZoneHeight() - sprite.getHeight();
+        if (x < 0 || x > maxX) {
+            if (edgeBehavior == EdgeBehavior.DELETE) {
+                sprite.delete();
+                return;
+            } else if (edgeBehavior == EdgeBehavior.BOUNCE) {
+                velocityX = -velocityX;
+                x = x < 0 ? -x : 2 * maxX - x;
+            } else if (edgeBehavior == EdgeBehavior.STOP) {
+                velocityX = 0;
+                remainderX = 0;
+            }
+            x = x < 0 ? 0 : x > maxX ? maxX : x;
+        }
+        if (y < 0 || y > maxY) {
+            if (edgeBehavior == EdgeBehavior.DELETE) {
+                sprite.delete();
+                return;
+            } else if (edgeBehavior == EdgeBehavior.BOUNCE) {
+                velocityY = -velocityY;
+                y = y < 0 ? -y : 2 * maxY - y;
+            } else if (edgeBehavior == EdgeBehavior.STOP) {
+                velocityY = 0;
+                remainderY = 0;
+            }
+            y = y < 0 ? 0 : y > maxY ? maxY : y;
+        }
+        sprite.moveTo(x, y);
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+/**
+ * The base of the typed messages sent to MessageReceivers through their
+ * Zone. Extend it with the fields the message needs. Classes with a message
+ * pool capacity must have a no argument constructor, and their instances are
+ * reused once delivered, so receivers must not keep references to them.
+ * @author Blinz
+ */
+public abstract class Message {
+
+    /**
+     * The next message in the recipient's mailbox.
+     */
+    Message next;
+    /**
+     * The handle of the recipient.
+     */
+    long recipient;
+
+    /**
+     * Stub method called before this message is returned to the pool. Clear
+     * references held by the message here.
+     */
+    protected void reset() {
+    }
+}
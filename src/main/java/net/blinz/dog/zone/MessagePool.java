@@ -0,0 +1,125 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps delivered Messages, grouped by class, for reuse. Pooling is off for
+ * every class until it is given a capacity.
+ * @author Blinz
+ */
+final class MessagePool {
+
+    private final HashMap<Class<? extends Message>, ArrayList<Message>> pools = new HashMap<Class<? extends Message>, ArrayList<Message>>();
+    private final HashMap<Class<? extends Message>, Integer> capacities = new HashMap<Class<? extends Message>, Integer>();
+    /**
+     * Indicates that some class has been given a capacity, so delivered
+     * messages skip the lock while pooling is unused.
+     */
+    private volatile boolean enabled = false;
+
+    /**
+     * Sets the number of messages of the given class that will be kept.
+     * @param clss the class of the messages
+     * @param capacity the number of messages to keep, 0 to disable pooling for the class
+     */
+    final synchronized void setCapacity(final Class<? extends Message> clss, final int capacity) {
+        capacities.put(clss, capacity);
+        enabled = true;
+        final ArrayList<Message> pool = pools.get(clss);
+        if (pool != null) {
+            while (pool.size() > capacity) {
+                pool.remove(pool.size() - 1);
+            }
+            pool.trimToSize();
+        }
+    }
+
+    /**
+     * Adds the given delivered message to the pool for its class if there is room.
+     * @param message the message to keep
+     */
+    final void recycle(final Message message) {
+        if (enabled) {
+            pool(message);
+        }
+    }
+
+    /**
+     * Adds the given message to the pool for its class if the class has room.
+     * @param message the message to keep
+     */
+    private final synchronized void pool(final Message message) {
+        final Class<? extends Message> clss = message.getClass();
+        final Integer capacity = capacities.get(clss);
+        if (capacity == null) {
+            return;
+        }
+        ArrayList<Message> pool = pools.get(clss);
+        if (pool == null) {
+            pool = new ArrayList<Message>();
+            pools.put(clss, pool);
+        }
+        if (pool.size() < capacity) {
+            message.reset();
+            message.next = null;
+            pool.add(message);
+        }
+    }
+
+    /**
+     * Gets a message of the given class, reusing a pooled one if possible.
+     * @param clss the class of the message, must have a no argument constructor
+     * @return a message of the given class, null if it could not be instantiated
+     */
+    final <T extends Message> T obtain(final Class<T> clss) {
+        synchronized (this) {
+            final ArrayList<Message> pool = pools.get(clss);
+            if (pool != null && !pool.isEmpty()) {
+                return clss.cast(pool.remove(pool.size() - 1));
+            }
+        }
+        try {
+            return clss.getDeclaredConstructor().newInstance();
+        } catch (NoSuchMethodException ex) {
+            Logger.getLogger(MessagePool.class.getName()).log(Level.SEVERE,
+                    clss.getName() + " has no no argument constructor.", ex);
+        } catch (InvocationTargetException ex) {
+            Logger.getLogger(MessagePool.class.getName()).log(Level.SEVERE,
+                    "The constructor of " + clss.getName() + " threw an exception.", ex.getCause());
+        } catch (InstantiationException ex) {
+            Logger.getLogger(MessagePool.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (IllegalAccessException ex) {
+            Logger.getLogger(MessagePool.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return null;
+    }
+
+    /**
+     * Trims the pools down to size.
+     */
+    final synchronized void trimLists() {
+        for (final ArrayList<Message> pool : pools.values()) {
+            pool.trimToSize();
+        }
+    }
+}
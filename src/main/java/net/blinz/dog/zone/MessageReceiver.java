@@ -0,0 +1,39 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+/**
+ * An interface for sprites that receive typed Messages. Messages are posted to
+ * a sprite's mailbox from any thread and delivered in a batch at the start of
+ * the update of the sprite's Sector.
+ * @author Blinz
+ */
+public interface MessageReceiver {
+
+    /**
+     * Gets the classes of the Messages this sprite accepts, others are dropped
+     * when posted. Must always return the same classes.
+     * @return the classes of the Messages this sprite accepts
+     */
+    public Class<?>[] getAcceptedMessages();
+
+    /**
+     * Called with each Message delivered to this sprite.
+     * @param message the message
+     */
+    public void receiveMessage(Message message);
+}
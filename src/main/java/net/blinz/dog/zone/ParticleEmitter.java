@@ -0,0 +1,248 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+import net.blinz.core.graphics.Graphics;
+import net.blinz.core.util.Bounds;
+import net.blinz.dog.util.SynchronizedTask;
+
+/**
+ * A source of short lived particles. Particles are not ZoneObjects and never
+ * join a Sector, they are kept in flat arrays in their emitter, moved in bulk
+ * once per cycle, and handed straight to the Scenes of the Cameras that see them.
+ * @author Blinz
+ */
+public abstract class ParticleEmitter extends ZoneObject {
+
+    private float layer;
+    private int particleWidth = 1, particleHeight = 1;
+    private float accelerationX = 0, accelerationY = 0;
+    private int count = 0;
+    private float[] x, y, velocityX, velocityY;
+    private int[] life, lifeSpan;
+
+    /**
+     * Constructor
+     * @param capacity the maximum number of live particles, further particles are dropped
+     * @param layer the layer to draw the particles on
+     */
+    public ParticleEmitter(final int capacity, final float layer) {
+        x = new float[capacity];
+        y = new float[capacity];
+        velocityX = new float[capacity];
+        velocityY = new float[capacity];
+        life = new int[capacity];
+        lifeSpan = new int[capacity];
+        setLayer(layer);
+    }
+
+    /**
+     * Emits a new particle. Does nothing if this emitter is at capacity.
+     * @param x the x coordinate of the particle
+     * @param y the y coordinate of the particle
+     * @param velocityX the distance the particle moves right each cycle
+     * @param velocityY the distance the particle moves down each cycle
+     * @param cycles the number of Zone cycles the particle lives for
+     * @return true if the particle was emitted, false otherwise
+     */
+    public final synchronized boolean emit(final float x, final float y,
+            final float velocityX, final float velocityY, final int cycles) {
+        if (count == this.x.length || cycles < 1) {
+            return false;
+        }
+        final int i = count++;
+        this.x[i] = x;
+        this.y[i] = y;
+        this.velocityX[i] = velocityX;
+        this.velocityY[i] = velocityY;
+        life[i] = cycles;
+        lifeSpan[i] = cycles;
+        return true;
+    }
+
+    /**
+     * Gets the number of live particles.
+     * @return the number of live particles
+     */
+    public final int getParticleCount() {
+        return count;
+    }
+
+    /**
+     * Gets the maximum number of live particles.
+     * @return the maximum number of live particles
+     */
+    public final int getCapacity() {
+        return x.length;
+    }
+
+    /**
+     * Gets the layer the particles are drawn on.
+     * @return the layer the particles are drawn on
+     */
+    public final float getLayer() {
+        return layer;
+    }
+
+    /**
+     * Sets the layer the particles are drawn on. Particles are drawn above the
+     * sprites that share their layer.
+     * @param layer the new layer for the particles
+     */
+    public final void setLayer(float layer) {
+        if (layer < 0) {
+            layer = 0;
+        } else if (layer > 49) {
+            layer = 49;
+        }
+        this.layer = layer;
+    }
+
+    /**
+     * Sets the size at which each particle is drawn.
+     * @param width the width of each particle
+     * @param height the height of each particle
+     */
+    public final void setParticleSize(final int width, final int height) {
+        particleWidth = width;
+        particleHeight = height;
+    }
+
+    /**
+     * Gets the width at which each particle is drawn.
+     * @return the width at which each particle is drawn
+     */
+    public final int getParticleWidth() {
+        return particleWidth;
+    }
+
+    /**
+     * Gets the height at which each particle is drawn.
+     * @return the height at which each particle is drawn
+     */
+    public final int getParticleHeight() {
+        return particleHeight;
+    }
+
+    /**
+     * Sets the change in velocity applied to every particle each cycle.
+     * @param x the change in the rightward velocity each cycle
+     * @param y the change in the downward velocity each cycle
+     */
+    public final void setAcceleration(final float x, final float y) {
+        accelerationX = x;
+        accelerationY = y;
+    }
+
+    /**
+     * Removes all live particles.
+     */
+    public final synchronized void clear() {
+        count = 0;
+    }
+
+    /**
+     * Draws a single particle.
+     * @param graphics the Graphics object with which to draw
+     * @param bounds the size and location of the particle on the screen
+     * @param age how far through its life the particle is, from 0 to 1
+     */
+    protected abstract void drawParticle(final Graphics graphics, final Bounds bounds, final float age);
+
+    /**
+     * Moves every particle and removes the ones that have died or left the Zone.
+     */
+    final synchronized void integrate() {
+        final float ax = accelerationX, ay = accelerationY;
+        final int zoneWidth = getData().getZoneWidth(), zoneHeight = getData().getZoneHeight();
+        final float[] px = x, py = y, vx = velocityX, vy = velocityY;
+        final int[] l = life;
+        for (int i = 0; i < count; i++) {
+            vx[i] += ax;
+            vy[i] += ay;
+            px[i] += vx[i];
+            py[i] += vy[i];
+            l[i]--;
+        }
+        //remove dead particles by moving the last particle into their place
+        for (int i = count - 1; i > -1; i--) {
+            if (l[i] < 1 || px[i] < 0 || py[i] < 0 || px[i] >= zoneWidth || py[i] >= zoneHeight) {
+                final int last = --count;
+                px[i] = px[last];
+                py[i] = py[last];
+                vx[i] = vx[last];
+                vy[i] = vy[last];
+                l[i] = l[last];
+                lifeSpan[i] = lifeSpan[last];
+            }
+        }
+    }
+
+    /**
+     * Copies the particles intersecting the given area into the given Scene.
+     * @param scene the Scene to add the particles to
+     * @param x the x coordinate of the area
+     * @param y the y coordinate of the area
+     * @param width the width of the area
+     * @param height the height of the area
+     */
+    final synchronized void addVisibleParticles(final Scene scene, final int x, final int y,
+            final int width, final int height) {
+        if (count == 0) {
+            return;
+        }
+        final SceneParticles particles = scene.add(this);
+        final float x1 = x - particleWidth, y1 = y - particleHeight;
+        final float x2 = x + width, y2 = y + height;
+        for (int i = 0; i < count; i++) {
+            final float px = this.x[i], py = this.y[i];
+            if (px > x1 && py > y1 && px < x2 && py < y2) {
+                particles.add((int) px, (int) py, 1 - (float) life[i] / lifeSpan[i]);
+            }
+        }
+    }
+}
+
+/**
+ * The SynchronizedTask for integrating ParticleEmitters.
+ * @author Blinz
+ */
+final class ParticleUpdater extends SynchronizedTask {
+
+    private ParticleEmitter emitter;
+
+    /**
+     * Constructor
+     * @param emitter the ParticleEmitter that this will integrate.
+     */
+    ParticleUpdater(final ParticleEmitter emitter) {
+        this.emitter = emitter;
+    }
+
+    @Override
+    protected void run() {
+        emitter.integrate();
+    }
+
+    /**
+     * Gets the ParticleEmitter associated with this ParticleUpdater.
+     * @return the ParticleEmitter associated with this ParticleUpdater
+     */
+    final ParticleEmitter getEmitter() {
+        return emitter;
+    }
+}
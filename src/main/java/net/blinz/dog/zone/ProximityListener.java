@@ -0,0 +1,40 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+/**
+ * An interface for receiving the events of a ProximitySensor. The methods are
+ * called during the post update from any of the Zone's threads, so changes to
+ * other sprites should be left to the next update.
+ * @author Blinz
+ */
+public interface ProximityListener {
+
+    /**
+     * Called when a sprite comes within the radius of the given sensor.
+     * @param sensor the sensor
+     * @param sprite the sprite that came within range
+     */
+    public void enteredProximity(ProximitySensor sensor, BaseSprite sprite);
+
+    /**
+     * Called when a sprite leaves the radius of the given sensor or its Zone.
+     * @param sensor the sensor
+     * @param sprite the sprite that left
+     */
+    public void leftProximity(ProximitySensor sensor, BaseSprite sprite);
+}
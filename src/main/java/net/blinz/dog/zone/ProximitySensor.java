@@ -0,0 +1,109 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+/**
+ * Watches the area within a radius of a sprite and tells its listener when
+ * sprites of a given type enter or leave it. Sensors are evaluated once per
+ * cycle after the update, and unless their owner moved they only look at the
+ * sprites that moved or arrived in nearby Sectors that cycle.
+ * @author Blinz
+ */
+public final class ProximitySensor extends AreaWatcher {
+
+    private final BaseSprite owner;
+    private final int radius;
+    private final ProximityListener listener;
+    /**
+     * The handle of the owner when this sensor was added to its Zone.
+     */
+    long ownerHandle = SpriteTable.NO_HANDLE;
+
+    /**
+     * Constructor
+     * @param owner the sprite at the center of this sensor
+     * @param radius the distance from the edges of the owner within which
+     * sprites are sensed
+     * @param filter the class or interface of the sprites to sense, null for all
+     * @param listener the listener to notify of sprites entering and leaving
+     */
+    public ProximitySensor(final BaseSprite owner, final int radius, final Class<?> filter,
+            final ProximityListener listener) {
+        super(filter);
+        this.owner = owner;
+        this.radius = radius;
+        this.listener = listener;
+    }
+
+    /**
+     * Gets the sprite at the center of this sensor.
+     * @return the sprite at the center of this sensor
+     */
+    public final BaseSprite getOwner() {
+        return owner;
+    }
+
+    /**
+     * Gets the distance from the edges of the owner within which sprites are sensed.
+     * @return the radius of this sensor
+     */
+    public final int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Indicates whether or not the owner is still the sprite this sensor was
+     * added to the Zone with.
+     * @param zoneData the ZoneData of the Zone
+     * @return true if the owner is still in the Zone, false otherwise
+     */
+    final boolean isAlive(final ZoneData zoneData) {
+        return zoneData.spriteTable.get(ownerHandle) == owner;
+    }
+
+    /**
+     * Finds the sprites that entered or left the range of this sensor since
+     * its last update and notifies the listener.
+     * @param zoneData the ZoneData of the Zone
+     */
+    final void update(final ZoneData zoneData) {
+        update(zoneData, movedSinceLastUpdate(owner), owner.getX() - radius, owner.getY() - radius,
+                owner.getWidth() + 2 * radius, owner.getHeight() + 2 * radius);
+    }
+
+    @Override
+    final boolean covers(final BaseSprite sprite) {
+        if (sprite == owner) {
+            return false;
+        }
+        final long dx = Math.max(0, Math.max(sprite.getX() - (owner.getX() + owner.getWidth()),
+                owner.getX() - (sprite.getX() + sprite.getWidth())));
+        final long dy = Math.max(0, Math.max(sprite.getY() - (owner.getY() + owner.getHeight()),
+                owner.getY() - (sprite.getY() + sprite.getHeight())));
+        return dx * dx + dy * dy <= (long) radius * radius;
+    }
+
+    @Override
+    final void entered(final BaseSprite sprite) {
+        listener.enteredProximity(this, sprite);
+    }
+
+    @Override
+    final void left(final BaseSprite sprite) {
+        listener.leftProximity(this, sprite);
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+/**
+ * An interface for sprites that are kept by their Zone after being deleted so
+ * that they can be reused by Zone.addSprite(Class, int, int) instead of being
+ * left for the garbage collector.
+ * @author Blinz
+ */
+public interface RecyclableSprite {
+
+    /**
+     * Called when this sprite is taken back out of its Zone's pool, before it
+     * is positioned and added to the Zone again. Restore any state left over
+     * from its previous life here.
+     */
+    public void reset();
+}
@@ -17,8 +17,10 @@
 package net.blinz.dog.zone;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Stack;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 import net.blinz.core.graphics.Graphics;
 import net.blinz.core.util.Bounds;
 import net.blinz.dog.zone.CameraSprite;
@@ -30,12 +32,96 @@ import net.blinz.dog.zone.CameraSprite;
  */
 final class Scene {
 
+    /**
+     * Layers with no more sprites than this are sorted by insertion.
+     */
+    private final static int INSERTION_SORT_LIMIT = 32;
+    /**
+     * The smallest number of SceneSprites the pool is trimmed down to.
+     */
+    private final static int MIN_POOL_SIZE = 64;
+    /**
+     * The size of the cells damage is tracked in, as a shift.
+     */
+    private final static int CELL_SHIFT = 5;
+    /**
+     * The size of the cells of the occlusion buffer, as a shift.
+     */
+    private final static int OCCLUSION_SHIFT = 4;
+    /**
+     * The source of the stamps that mark the CameraSprites added to a Scene,
+     * shared so that no two builds of any Scenes use the same stamp.
+     */
+    private final static AtomicLong stamps = new AtomicLong();
     int translationX, translationY, width, height;
+    /**
+     * The size things are drawn at relative to their size in the Zone.
+     */
+    float scale = 1;
+    /**
+     * The number of the frame this Scene holds, counted by its Camera.
+     */
+    long sequence;
+    /**
+     * The stamp of the Scene its Camera built before this one.
+     */
+    long previousStamp;
+    /**
+     * Indicates that everything in this Scene must be redrawn, rather than
+     * just the areas that changed since the previous Scene.
+     */
+    boolean fullRepaint;
+    /**
+     * The cells of the screen that changed since the previous Scene.
+     */
+    private boolean[] damage = new boolean[0];
+    private int damageColumns, damageRows, damageCount;
+    /**
+     * The changed areas of the screen as x, y, width and height, merged from
+     * the damaged cells.
+     */
+    private int[] damageRects = new int[16];
+    private int damageRectCount;
+    /**
+     * The cells of the screen completely covered by opaque sprites, filled
+     * from the top layer down.
+     */
+    private boolean[] occluded = new boolean[0];
+    private int occlusionColumns, occlusionRows;
+    private int opaqueCount;
     private int spriteCount = 0;
-    private final Stack<SceneSprite> containers = new Stack<SceneSprite>();
+    /**
+     * The SceneSprites not currently in a layer, available for reuse.
+     */
+    private SceneSprite[] containers = new SceneSprite[MIN_POOL_SIZE];
+    private int containerCount = 0;
+    /**
+     * The recent peak number of sprites in this Scene, decaying slowly so the
+     * pool is sized from the last several seconds of frames.
+     */
+    private int peakSpriteCount = 0;
     private final ArrayList<SceneSprite>[] layers = new ArrayList[50];
-    private boolean isLocked = false;
+    /**
+     * The TileChunks to draw beneath the sprites of each layer.
+     */
+    private final ArrayList<TileChunk>[] tileLayers = new ArrayList[50];
+    /**
+     * The particles to draw above the sprites of each layer.
+     */
+    private final ArrayList<SceneParticles>[] particleLayers = new ArrayList[50];
+    private final Stack<SceneParticles> particleContainers = new Stack<SceneParticles>();
     private long lastCleanUpTime = System.currentTimeMillis();
+    /**
+     * The stamp of the current build of this Scene.
+     */
+    private long stamp = stamps.incrementAndGet();
+    private final Bounds bounds = new Bounds(), clip = new Bounds();
+    /**
+     * Scratch space for radix sorting the layers.
+     */
+    private SceneSprite[] sortBuffer = new SceneSprite[0], sortSpace = new SceneSprite[0];
+    private int[] sortKeys = new int[0], sortKeySpace = new int[0];
+    private final int[] sortCounts = new int[257];
 
     /**
      * Constructor
@@ -43,6 +129,8 @@ final class Scene {
     Scene() {
         for (int i = 0; i < layers.length; i++) {
             layers[i] = new ArrayList<SceneSprite>();
+            tileLayers[i] = new ArrayList<TileChunk>();
+            particleLayers[i] = new ArrayList<SceneParticles>();
         }
     }
 
@@ -56,6 +144,15 @@ final class Scene {
         translationY = y;
     }
 
+    /**
+     * Sets the size things in this Scene are drawn at relative to their size
+     * in the Zone.
+     * @param scale the new scale of this Scene
+     */
+    final void setScale(final float scale) {
+        this.scale = scale;
+    }
+
     /**
      * Sets the size of this Scene.
      * @param width the new width of this Scene
@@ -64,6 +161,16 @@ final class Scene {
     final void setSize(final int width, final int height) {
         this.width = width;
         this.height = height;
+        damageColumns = (width + (1 << CELL_SHIFT) - 1) >> CELL_SHIFT;
+        damageRows = (height + (1 << CELL_SHIFT) - 1) >> CELL_SHIFT;
+        if (damage.length != damageColumns * damageRows) {
+            damage = new boolean[damageColumns * damageRows];
+        }
+        occlusionColumns = (width + (1 << OCCLUSION_SHIFT) - 1) >> OCCLUSION_SHIFT;
+        occlusionRows = (height + (1 << OCCLUSION_SHIFT) - 1) >> OCCLUSION_SHIFT;
+        if (occluded.length != occlusionColumns * occlusionRows) {
+            occluded = new boolean[occlusionColumns * occlusionRows];
+        }
     }
 
     /**
@@ -71,12 +178,81 @@ final class Scene {
      * @param sprite the CameraSprite to be added to this Scene
      */
     final void add(final CameraSprite sprite) {
-        if (!contains(sprite, (int) sprite.getLayer())) {
-            layers[(int) sprite.getLayer()].add(fetchSceneSprite(sprite));
+        if (sprite.sceneStamp != stamp) {
+            final boolean shown = sprite.sceneStamp == previousStamp;
+            sprite.sceneStamp = stamp;
+            final SceneSprite sc = fetchSceneSprite(sprite);
+            layers[(int) sc.layer].add(sc);
             spriteCount++;
+            if (sc.opaque) {
+                opaqueCount++;
+            }
+            //sprites drawn live may look different any frame
+            if (!shown || sc.visual == null || sc.visual != sprite.shownVisual
+                    || sc.x != sprite.shownX || sc.y != sprite.shownY
+                    || sc.width != sprite.shownWidth || sc.height != sprite.shownHeight
+                    || sc.layer != sprite.shownLayer) {
+                if (shown) {
+                    damage(sprite.shownX, sprite.shownY, sprite.shownWidth, sprite.shownHeight);
+                }
+                damage(sc.x, sc.y, sc.width, sc.height);
+                sprite.shownX = sc.x;
+                sprite.shownY = sc.y;
+                sprite.shownWidth = sc.width;
+                sprite.shownHeight = sc.height;
+                sprite.shownLayer = sc.layer;
+                sprite.shownVisual = sc.visual;
+            }
+        }
+    }
+
+    /**
+     * Adds the given Visual, standing for no sprite in particular, to this Scene.
+     * @param visual the Visual to draw
+     * @param x the x coordinate of the Visual in the Zone
+     * @param y the y coordinate of the Visual in the Zone
+     * @param w the width of the Visual in the Zone
+     * @param h the height of the Visual in the Zone
+     * @param layer the layer to draw the Visual on
+     */
+    final void add(final Visual visual, final int x, final int y, final int w, final int h, final int layer) {
+        SceneSprite sc;
+        if (containerCount == 0) {
+            sc = new SceneSprite();
+        } else {
+            sc = containers[--containerCount];
+            containers[containerCount] = null;
+        }
+        sc.record(visual, x, y, w, h, layer);
+        layers[layer].add(sc);
+        spriteCount++;
+    }
+
+    /**
+     * Adds the given TileChunk to this Scene.
+     * @param chunk the TileChunk to be added to this Scene
+     */
+    final void add(final TileChunk chunk) {
+        tileLayers[(int) chunk.getLayer()].add(chunk);
+        if (chunk.editStamp >= previousStamp) {
+            damage(chunk.getX(), chunk.getY(), chunk.getWidth(), chunk.getHeight());
         }
     }
 
+    /**
+     * Adds a container for the particles of the given ParticleEmitter to this
+     * Scene.
+     * @param emitter the ParticleEmitter whose particles are to be added
+     * @return an empty SceneParticles to copy the visible particles into
+     */
+    final SceneParticles add(final ParticleEmitter emitter) {
+        final SceneParticles particles = particleContainers.empty()
+                ? new SceneParticles() : particleContainers.pop();
+        particles.reset(emitter);
+        particleLayers[(int) emitter.getLayer()].add(particles);
+        return particles;
+    }
+
     /**
      * Adds the CameraSprites in the given list of CameraSprites to this Scene.
      * @param sprites the list of CameraSprites to be added to this Scene
@@ -88,26 +264,157 @@ final class Scene {
     }
 
     /**
-     * Indicates whether or not this Scene is currently locked.
-     * @return true if the locking succeeded, false if it didn't
+     * Hides the sprites and TileChunks completely covered by opaque sprites
+     * drawn above them. Goes through the layers front to back, testing each
+     * sprite against the cells covered so far before adding the cells it
+     * covers itself. Must be called after the layers are sorted.
+     */
+    final void cullOccluded() {
+        if (opaqueCount == 0) {
+            return;
+        }
+        Arrays.fill(occluded, false);
+        for (int l = layers.length - 1; l > -1; l--) {
+            final ArrayList<SceneSprite> layer = layers[l];
+            for (int i = layer.size() - 1; i > -1; i--) {
+                final SceneSprite sprite = layer.get(i);
+                place(sprite.x, sprite.y, sprite.width, sprite.height);
+                sprite.hidden = isOccluded(bounds.x, bounds.y, bounds.width, bounds.height);
+                if (sprite.opaque && !sprite.hidden) {
+                    occlude(bounds.x, bounds.y, bounds.width, bounds.height);
+                }
+            }
+            final ArrayList<TileChunk> tiles = tileLayers[l];
+            for (int i = tiles.size() - 1; i > -1; i--) {
+                final TileChunk chunk = tiles.get(i);
+                place(chunk.getX(), chunk.getY(), chunk.getWidth(), chunk.getHeight());
+                if (isOccluded(bounds.x, bounds.y, bounds.width, bounds.height)) {
+                    tiles.remove(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the sprites shown in the previous Scene that are not in this one
+     * as damaged, then replaces the given list with the sprites of this Scene.
+     * @param shown the CameraSprites shown in the previous Scene
+     */
+    final void damageRemovedSprites(final ArrayList<CameraSprite> shown) {
+        for (int i = 0; i < shown.size(); i++) {
+            final CameraSprite sprite = shown.get(i);
+            if (sprite.sceneStamp != stamp) {
+                damage(sprite.shownX, sprite.shownY, sprite.shownWidth, sprite.shownHeight);
+            }
+        }
+        shown.clear();
+        for (final ArrayList<SceneSprite> layer : layers) {
+            for (int i = 0; i < layer.size(); i++) {
+                if (layer.get(i).sprite != null) {
+                    shown.add(layer.get(i).sprite);
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the area covered by the particles of this Scene and the given area
+     * covered by those of the previous Scene as damaged, then sets the given
+     * area to that of this Scene.
+     * @param area the x, y, x2 and y2 of the area covered by the particles of
+     * the previous Scene
      */
-    final boolean isLocked() {
-        return isLocked;
+    final void damageParticles(final int[] area) {
+        if (area[0] < area[2]) {
+            damage(area[0], area[1], area[2] - area[0], area[3] - area[1]);
+        }
+        area[0] = area[1] = Integer.MAX_VALUE;
+        area[2] = area[3] = Integer.MIN_VALUE;
+        for (final ArrayList<SceneParticles> list : particleLayers) {
+            for (int i = 0; i < list.size(); i++) {
+                final SceneParticles particles = list.get(i);
+                area[0] = Math.min(area[0], particles.minX);
+                area[1] = Math.min(area[1], particles.minY);
+                area[2] = Math.max(area[2], particles.maxX);
+                area[3] = Math.max(area[3], particles.maxY);
+            }
+        }
+        if (area[0] < area[2]) {
+            damage(area[0], area[1], area[2] - area[0], area[3] - area[1]);
+        }
     }
 
     /**
-     * Attempts to lock this Scene.
-     * @return true if the locking succeeded, false if it didn't
+     * Merges the damaged cells of this Scene into rectangles, row runs that
+     * line up with the run below them being joined. Falls back to a full
+     * repaint when most of the screen changed.
      */
-    final synchronized boolean lock() {
-        return !setLock(true);
+    final void mergeDamage() {
+        damageRectCount = 0;
+        if (fullRepaint || damageCount == 0) {
+            return;
+        }
+        if (damageCount * 2 > damage.length) {
+            fullRepaint = true;
+            return;
+        }
+        int rowStart = 0;
+        for (int row = 0; row < damageRows; row++) {
+            final int previousRowStart = rowStart;
+            rowStart = damageRectCount;
+            int column = 0;
+            while (column < damageColumns) {
+                if (!damage[row * damageColumns + column]) {
+                    column++;
+                    continue;
+                }
+                final int start = column;
+                while (column < damageColumns && damage[row * damageColumns + column]) {
+                    column++;
+                }
+                final int x = start << CELL_SHIFT, w = (column - start) << CELL_SHIFT;
+                int rect = -1;
+                for (int i = previousRowStart; i < rowStart; i++) {
+                    if (damageRects[i * 4] == x && damageRects[i * 4 + 2] == w) {
+                        rect = i;
+                        break;
+                    }
+                }
+                if (rect != -1) {
+                    damageRects[rect * 4 + 3] += 1 << CELL_SHIFT;
+                    //move the grown rectangle into this row so the next can join it
+                    swapDamageRects(rect, rowStart - 1);
+                    rowStart--;
+                } else {
+                    if (damageRects.length < damageRectCount * 4 + 4) {
+                        damageRects = Arrays.copyOf(damageRects, damageRects.length * 2);
+                    }
+                    damageRects[damageRectCount * 4] = x;
+                    damageRects[damageRectCount * 4 + 1] = row << CELL_SHIFT;
+                    damageRects[damageRectCount * 4 + 2] = w;
+                    damageRects[damageRectCount * 4 + 3] = 1 << CELL_SHIFT;
+                    damageRectCount++;
+                }
+            }
+        }
     }
 
     /**
-     * Unlocks this Scene.
+     * Redraws the areas of the given image that changed since the previous
+     * Scene, or all of it if asked to or if this Scene requires it.
+     * @param buffer the BackBuffer that owns the image
+     * @param graphics the Graphics object drawing to the image
+     * @param full whether or not to redraw the whole image
      */
-    final void unLock() {
-        setLock(false);
+    final <I> void repaint(final BackBuffer<I> buffer, final Graphics graphics, final boolean full) {
+        if (full || fullRepaint) {
+            repaint(buffer, graphics, 0, 0, width, height);
+        } else {
+            for (int i = 0; i < damageRectCount; i++) {
+                repaint(buffer, graphics, damageRects[i * 4], damageRects[i * 4 + 1],
+                        damageRects[i * 4 + 2], damageRects[i * 4 + 3]);
+            }
+        }
     }
 
     /**
@@ -115,38 +422,219 @@ final class Scene {
      * @param graphics
      */
     final void draw(final Graphics graphics) {
-        final Bounds bounds = new Bounds();
+        draw(graphics, 0, 0, width, height);
+    }
 
-        for (final ArrayList<SceneSprite> layer : layers) {
+    /**
+     * Draws the parts of this Scene that intersect the given area of the screen.
+     * @param graphics the Graphics object with which to draw
+     * @param x the x coordinate of the area on the screen
+     * @param y the y coordinate of the area on the screen
+     * @param w the width of the area
+     * @param h the height of the area
+     */
+    private final void draw(final Graphics graphics, final int x, final int y, final int w, final int h) {
+        for (int l = 0; l < layers.length; l++) {
+            final ArrayList<TileChunk> tiles = tileLayers[l];
+            for (int i = 0; i < tiles.size(); i++) {
+                final TileChunk chunk = tiles.get(i);
+                place(chunk.getX(), chunk.getY(), chunk.getWidth(), chunk.getHeight());
+                if (bounds.intersects(x, y, w, h)) {
+                    chunk.draw(graphics, bounds);
+                }
+            }
+            final ArrayList<SceneSprite> layer = layers[l];
             for (int i = 0; i < layer.size(); i++) {
 		final SceneSprite sprite = layer.get(i);
-                bounds.setPosition(sprite.x - translationX,
-                        sprite.y - translationY);
-                bounds.setSize(sprite.sprite.getWidth(), sprite.sprite.getHeight());
-                sprite.sprite.draw(graphics, bounds);
-                containers.add(sprite);
+                if (sprite.hidden) {
+                    continue;
+                }
+                place(sprite.x, sprite.y, sprite.width, sprite.height);
+                if (!bounds.intersects(x, y, w, h)) {
+                    continue;
+                }
+                if (sprite.visual != null) {
+                    sprite.visual.draw(graphics, bounds);
+                    if (sprite.selected) {
+                        sprite.visual.drawSelectionIndicator(graphics, bounds);
+                    }
+                } else {
+                    sprite.baseSprite.draw(graphics, bounds);
+                    if (sprite.selected && sprite.baseSprite instanceof SelectableSprite) {
+                        ((SelectableSprite) sprite.baseSprite).drawSelectionIndicator(graphics, bounds);
+                    }
+                }
+            }
+            final ArrayList<SceneParticles> particles = particleLayers[l];
+            for (int i = 0; i < particles.size(); i++) {
+                final SceneParticles p = particles.get(i);
+                place(p.minX, p.minY, p.maxX - p.minX, p.maxY - p.minY);
+                if (bounds.intersects(x, y, w, h)) {
+                    p.draw(graphics, bounds, translationX, translationY, scale);
+                }
             }
         }
     }
 
     /**
-     * Preserves the SceneSprites so that excessive creation of them does not
-     * exceed the rate at which they can be deleted. SceneSprites are periodically
-     * deleted to keep a memory leak from becoming problematic over a long period
-     * of time.
+     * Clears and redraws the given area of a BackBuffer's image.
+     * @param buffer the BackBuffer that owns the image
+     * @param graphics the Graphics object drawing to the image
+     * @param x the x coordinate of the area
+     * @param y the y coordinate of the area
+     * @param w the width of the area
+     * @param h the height of the area
      */
-    final void manageSceneSprites() {
-        if (lastCleanUpTime < System.currentTimeMillis() - 10000) {
-            if (containers.size() >= spriteCount) {
-                for (int i = 0; i < spriteCount; i++) {
-                    containers.remove(0);
+    private final <I> void repaint(final BackBuffer<I> buffer, final Graphics graphics,
+            final int x, final int y, final int w, final int h) {
+        clip.setPosition(x, y);
+        clip.setSize(w, h);
+        buffer.setClip(graphics, clip);
+        buffer.clear(graphics, clip);
+        draw(graphics, x, y, w, h);
+    }
+
+    /**
+     * Marks the given area of the Zone as changed since the previous Scene.
+     * @param x the x coordinate of the area in the Zone
+     * @param y the y coordinate of the area in the Zone
+     * @param w the width of the area
+     * @param h the height of the area
+     */
+    private final void damage(final int x, final int y, final int w, final int h) {
+        if (fullRepaint || w <= 0 || h <= 0) {
+            return;
+        }
+        place(x, y, w, h);
+        damageScreen(bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+
+    /**
+     * Marks the given area of the screen as changed since the previous Scene.
+     * @param x the x coordinate of the area on the screen
+     * @param y the y coordinate of the area on the screen
+     * @param w the width of the area
+     * @param h the height of the area
+     */
+    private final void damageScreen(final int x, final int y, final int w, final int h) {
+        final int x1 = Math.max(0, x >> CELL_SHIFT);
+        final int y1 = Math.max(0, y >> CELL_SHIFT);
+        final int x2 = Math.min(damageColumns - 1, (x + w - 1) >> CELL_SHIFT);
+        final int y2 = Math.min(damageRows - 1, (y + h - 1) >> CELL_SHIFT);
+        for (int row = y1; row <= y2; row++) {
+            for (int column = x1; column <= x2; column++) {
+                final int cell = row * damageColumns + column;
+                if (!damage[cell]) {
+                    damage[cell] = true;
+                    damageCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the bounds used for drawing to the area of the screen covered by
+     * the given area of the Zone.
+     * @param x the x coordinate of the area in the Zone
+     * @param y the y coordinate of the area in the Zone
+     * @param w the width of the area
+     * @param h the height of the area
+     */
+    private final void place(final int x, final int y, final int w, final int h) {
+        if (scale == 1) {
+            bounds.setPosition(x - translationX, y - translationY);
+            bounds.setSize(w, h);
+        } else {
+            //scale both edges so neighbouring things meet without gaps
+            final int x1 = (int) Math.floor((x - translationX) * (double) scale);
+            final int y1 = (int) Math.floor((y - translationY) * (double) scale);
+            final int x2 = (int) Math.floor((x + w - translationX) * (double) scale);
+            final int y2 = (int) Math.floor((y + h - translationY) * (double) scale);
+            bounds.setPosition(x1, y1);
+            bounds.setSize(Math.max(1, x2 - x1), Math.max(1, y2 - y1));
+        }
+    }
+
+    /**
+     * Indicates whether or not every occlusion cell touched by the given area
+     * of the screen is covered.
+     * @param x the x coordinate of the area on the screen
+     * @param y the y coordinate of the area on the screen
+     * @param w the width of the area
+     * @param h the height of the area
+     * @return true if the area is hidden, false otherwise
+     */
+    private final boolean isOccluded(final int x, final int y, final int w, final int h) {
+        final int x1 = Math.max(0, x >> OCCLUSION_SHIFT);
+        final int y1 = Math.max(0, y >> OCCLUSION_SHIFT);
+        final int x2 = Math.min(occlusionColumns - 1, (x + w - 1) >> OCCLUSION_SHIFT);
+        final int y2 = Math.min(occlusionRows - 1, (y + h - 1) >> OCCLUSION_SHIFT);
+        if (x1 > x2 || y1 > y2) {
+            return false;
+        }
+        for (int row = y1; row <= y2; row++) {
+            for (int column = x1; column <= x2; column++) {
+                if (!occluded[row * occlusionColumns + column]) {
+                    return false;
                 }
             }
-            clear();
+        }
+        return true;
+    }
+
+    /**
+     * Marks the occlusion cells lying entirely within the given area of the
+     * screen as covered.
+     * @param x the x coordinate of the area on the screen
+     * @param y the y coordinate of the area on the screen
+     * @param w the width of the area
+     * @param h the height of the area
+     */
+    private final void occlude(final int x, final int y, final int w, final int h) {
+        final int cell = (1 << OCCLUSION_SHIFT) - 1;
+        final int x1 = Math.max(0, (x + cell) >> OCCLUSION_SHIFT);
+        final int y1 = Math.max(0, (y + cell) >> OCCLUSION_SHIFT);
+        //cells cut off by the edge of the screen only need to be covered up to it
+        final int x2 = x + w >= width ? occlusionColumns - 1 : Math.min(occlusionColumns - 1, ((x + w) >> OCCLUSION_SHIFT) - 1);
+        final int y2 = y + h >= height ? occlusionRows - 1 : Math.min(occlusionRows - 1, ((y + h) >> OCCLUSION_SHIFT) - 1);
+        for (int row = y1; row <= y2; row++) {
+            for (int column = x1; column <= x2; column++) {
+                occluded[row * occlusionColumns + column] = true;
+            }
+        }
+    }
+
+    /**
+     * Swaps two of the damage rectangles.
+     * @param a the index of one rectangle
+     * @param b the index of the other rectangle
+     */
+    private final void swapDamageRects(final int a, final int b) {
+        for (int i = 0; i < 4; i++) {
+            final int t = damageRects[a * 4 + i];
+            damageRects[a * 4 + i] = damageRects[b * 4 + i];
+            damageRects[b * 4 + i] = t;
+        }
+    }
+
+    /**
+     * Clears this Scene, returning its SceneSprites to the pool. Every 10
+     * seconds the pool is cut back to twice the recent peak number of visible
+     * sprites, so it stays bounded without the cost of pruning every frame.
+     */
+    final void manageSceneSprites() {
+        clear();
+        if (lastCleanUpTime < System.currentTimeMillis() - 10000) {
             lastCleanUpTime = System.currentTimeMillis();
- 	    trimLists();
- 	    } else {
-            clear();
+            final int size = Math.max(MIN_POOL_SIZE, peakSpriteCount * 2);
+            if (containers.length > size * 2) {
+                //only shrink when well over, so a steady load never reallocates
+                final SceneSprite[] pool = new SceneSprite[size];
+                containerCount = Math.min(containerCount, size);
+                System.arraycopy(containers, 0, pool, 0, containerCount);
+                containers = pool;
+                trimLists();
+            }
         }
     }
 
@@ -156,7 +644,7 @@ final class Scene {
      */
     final void sortLayers() {
         for (int i = 0; i < layers.length; i++) {
-            sortLayer(layers[i], 0, layers[i].size() - 1);
+            sortLayer(layers[i]);
         }
     }
 
@@ -164,112 +652,228 @@ final class Scene {
      * Clears all sprites from this Scene.
      */
     private final void clear() {
-        for (final ArrayList list : layers) {
+        peakSpriteCount = Math.max(spriteCount, peakSpriteCount - (peakSpriteCount >> 4));
+        if (containers.length < containerCount + spriteCount) {
+            containers = Arrays.copyOf(containers,
+                    Math.max(containerCount + spriteCount, peakSpriteCount * 2));
+        }
+        for (final ArrayList<SceneSprite> list : layers) {
+            for (int i = 0; i < list.size(); i++) {
+                final SceneSprite sc = list.get(i);
+                sc.sprite = null;
+                sc.baseSprite = null;
+                sc.visual = null;
+                containers[containerCount++] = sc;
+            }
+            list.clear();
+        }
+        for (final ArrayList list : tileLayers) {
+            list.clear();
+        }
+        for (final ArrayList<SceneParticles> list : particleLayers) {
+            particleContainers.addAll(list);
             list.clear();
         }
         spriteCount = 0;
+        opaqueCount = 0;
+        stamp = stamps.incrementAndGet();
+        if (damageCount != 0) {
+            Arrays.fill(damage, false);
+            damageCount = 0;
+        }
+        fullRepaint = false;
     }
 
     /**
-     * Gets a SceneSprite containing the given CameraSprite.
-     * @param sprite the Sprite for which a Container will be returned
-     * @return a available SceneSprite representing the given CameraSprite
+     * Gets the stamp of the current build of this Scene.
+     * @return the stamp of the current build of this Scene
      */
-    private final SceneSprite fetchSceneSprite(final CameraSprite sprite) {
-        if (containers.empty()) {
-            return new SceneSprite(sprite);
-        } else {
-            final SceneSprite sc = containers.pop();
-            sc.sprite = sprite;
-            sc.x = sprite.getX();
-            sc.y = sprite.getY();
-            sc.layer = sprite.getLayer();
-            return sc;
-        }
+    final long getStamp() {
+        return stamp;
     }
 
     /**
-     * Changes the locked status to that of the given value and returns the old
-     * lock status.
-     * @param lock the lock status of this Scene
-     * @return boolean old lock status prior to this call
+     * Gets the current value of the source of the Scene stamps.
+     * @return the stamp most recently given to a Scene
      */
-    private final synchronized boolean setLock(final boolean lock) {
-        boolean retval = isLocked;
-        isLocked = lock;
-        return retval;
+    static long currentStamp() {
+        return stamps.get();
     }
 
     /**
-     * Indicates whether or not the given CameraSprite is in this Scene.
-     * @param sprite the CameraSprite to check for
-     * @return returns whether or not this Scene contains the given sprite
+     * Gets a SceneSprite containing the given CameraSprite.
+     * @param sprite the Sprite for which a Container will be returned
+     * @return a available SceneSprite representing the given CameraSprite
      */
-    private final boolean contains(final CameraSprite sprite, final int layer) {
-        for (int i = 0; i < layers[layer].size(); i++) {
-            final SceneSprite s = layers[layer].get(i);
-	    if (sprite == s.sprite) {
-                return true;
-            }
+    private final SceneSprite fetchSceneSprite(final CameraSprite sprite) {
+        if (containerCount == 0) {
+            return new SceneSprite(sprite);
+        } else {
+            final SceneSprite sc = containers[--containerCount];
+            containers[containerCount] = null;
+            sc.record(sprite);
+            return sc;
         }
-        return false;
     }
 
     /**
-     * Sorts the given layer's sprites according the sub-layer data.
-     * @param low the point on the list where the sorting will begin
-     * @param high the point on the list where the sorting will end
+     * Sorts the given layer's sprites according the sub-layer data. The sort
+     * is stable, layers that are already in order cost one pass, small layers
+     * are sorted by insertion and the rest by a radix sort on the layer value.
+     * @param layer the sprites of the layer
      */
-    private final void sortLayer(final ArrayList<SceneSprite> layer, final int low, final int high) {
-        if (low >= high) {
+    private final void sortLayer(final ArrayList<SceneSprite> layer) {
+        final int size = layer.size();
+        int sorted = 1;
+        while (sorted < size && layer.get(sorted - 1).layer <= layer.get(sorted).layer) {
+            sorted++;
+        }
+        if (sorted >= size) {
             return;
         }
 
-        final SceneSprite pivot = layer.get(high);
-        int pivotIndex = high;
-        for (int i = low; i <= pivotIndex;) {
-            if (layer.get(i).layer() > pivot.layer()) {
+        if (size <= INSERTION_SORT_LIMIT) {
+            for (int i = sorted; i < size; i++) {
                 final SceneSprite current = layer.get(i);
-                layer.set(pivotIndex, current);
-                layer.set(i, layer.get(pivotIndex - 1));
-                layer.set(pivotIndex - 1, pivot);
-                pivotIndex--;
-            } else {
-                i++;
+                int n = i - 1;
+                while (n > -1 && layer.get(n).layer > current.layer) {
+                    layer.set(n + 1, layer.get(n));
+                    n--;
+                }
+                layer.set(n + 1, current);
             }
+            return;
         }
 
-        sortLayer(layer, low, pivotIndex - 1);
-        sortLayer(layer, pivotIndex + 1, high);
+        if (sortBuffer.length < size) {
+            sortBuffer = new SceneSprite[size * 2];
+            sortSpace = new SceneSprite[size * 2];
+            sortKeys = new int[size * 2];
+            sortKeySpace = new int[size * 2];
+        }
+        SceneSprite[] from = sortBuffer, to = sortSpace;
+        int[] keys = sortKeys, toKeys = sortKeySpace;
+        for (int i = 0; i < size; i++) {
+            from[i] = layer.get(i);
+            //layers are never negative, so their bits order like the values
+            keys[i] = Float.floatToIntBits(from[i].layer + 0.0f);
+        }
+        for (int shift = 0; shift < 32; shift += 8) {
+            final int[] counts = sortCounts;
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[((keys[i] >>> shift) & 0xFF) + 1]++;
+            }
+            //skip the digits every key shares
+            if (counts[((keys[0] >>> shift) & 0xFF) + 1] == size) {
+                continue;
+            }
+            for (int i = 1; i < counts.length; i++) {
+                counts[i] += counts[i - 1];
+            }
+            for (int i = 0; i < size; i++) {
+                final int d = counts[(keys[i] >>> shift) & 0xFF]++;
+                to[d] = from[i];
+                toKeys[d] = keys[i];
+            }
+            final SceneSprite[] f = from;
+            from = to;
+            to = f;
+            final int[] k = keys;
+            keys = toKeys;
+            toKeys = k;
+        }
+        for (int i = 0; i < size; i++) {
+            layer.set(i, from[i]);
+            from[i] = null;
+            to[i] = null;
+        }
     }
-   
+
     /**
      * Trims the size of all lists down to their current size to recover memory.
      */
     private final void trimLists() {
 	for (int i = 0; i < layers.length; i++) {
 		layers[i].trimToSize();
+		tileLayers[i].trimToSize();
+		particleLayers[i].trimToSize();
   	}
     }
 
     /**
      * Holds important status information about the sprite it contains at the time
-     * of the generation of a Scene.
+     * of the generation of a Scene. When the sprite has a Visual this is a
+     * complete draw command, and the sprite itself is not touched when drawing.
+     * The renderer never reads the CameraSprite, which its Camera may reuse for
+     * another sprite while this Scene is still being drawn.
      */
     private final class SceneSprite {
 
         private CameraSprite sprite;
-        private int x, y;
+        /**
+         * The sprite to draw live, null when drawn from the Visual.
+         */
+        private BaseSprite baseSprite;
+        private Visual visual;
+        private int x, y, width, height;
         private float layer;
+        private boolean selected;
+        private boolean opaque, hidden;
+
         /**
          * Constructor
          * @param sprite the Camera Sprite that this will represent
          */
         SceneSprite(final CameraSprite sprite) {
+            record(sprite);
+        }
+
+        /**
+         * Constructor
+         */
+        SceneSprite() {
+        }
+
+        /**
+         * Records the current state of the given sprite.
+         * @param sprite the Camera Sprite that this will represent
+         */
+        final void record(final CameraSprite sprite) {
             this.sprite = sprite;
             x = sprite.getX();
             y = sprite.getY();
+            width = sprite.getWidth();
+            height = sprite.getHeight();
             layer = sprite.getLayer();
+            visual = sprite.getVisual();
+            baseSprite = visual == null ? sprite.getSprite() : null;
+            selected = sprite.isSelected();
+            opaque = sprite.isOpaque();
+            hidden = false;
+        }
+
+        /**
+         * Records a Visual standing for no sprite in particular.
+         * @param visual the Visual to draw
+         * @param x the x coordinate of the Visual in the Zone
+         * @param y the y coordinate of the Visual in the Zone
+         * @param w the width of the Visual in the Zone
+         * @param h the height of the Visual in the Zone
+         * @param layer the layer to draw the Visual on
+         */
+        final void record(final Visual visual, final int x, final int y, final int w, final int h, final int layer) {
+            sprite = null;
+            baseSprite = null;
+            this.visual = visual;
+            this.x = x;
+            this.y = y;
+            width = w;
+            height = h;
+            this.layer = layer;
+            selected = false;
+            opaque = false;
+            hidden = false;
         }
 
         /**
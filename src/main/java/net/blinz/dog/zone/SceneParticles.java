@@ -0,0 +1,94 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+import net.blinz.core.graphics.Graphics;
+import net.blinz.core.util.Bounds;
+
+/**
+ * Holds the positions and ages of the particles of one ParticleEmitter at the
+ * time of the generation of a Scene.
+ * @author Blinz
+ */
+final class SceneParticles {
+
+    private ParticleEmitter emitter;
+    private int count = 0;
+    private int[] x = new int[16], y = new int[16];
+    private float[] age = new float[16];
+    /**
+     * The area covered by the particles.
+     */
+    int minX, minY, maxX, maxY;
+
+    /**
+     * Empties this SceneParticles and assigns it to the given emitter.
+     * @param emitter the ParticleEmitter this will represent
+     */
+    final void reset(final ParticleEmitter emitter) {
+        this.emitter = emitter;
+        count = 0;
+        minX = minY = Integer.MAX_VALUE;
+        maxX = maxY = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Adds a particle.
+     * @param x the x coordinate of the particle
+     * @param y the y coordinate of the particle
+     * @param age how far through its life the particle is
+     */
+    final void add(final int x, final int y, final float age) {
+        if (count == this.x.length) {
+            final int[] nx = new int[count * 2], ny = new int[count * 2];
+            final float[] na = new float[count * 2];
+            System.arraycopy(this.x, 0, nx, 0, count);
+            System.arraycopy(this.y, 0, ny, 0, count);
+            System.arraycopy(this.age, 0, na, 0, count);
+            this.x = nx;
+            this.y = ny;
+            this.age = na;
+        }
+        this.x[count] = x;
+        this.y[count] = y;
+        this.age[count] = age;
+        count++;
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        maxX = Math.max(maxX, x + emitter.getParticleWidth());
+        maxY = Math.max(maxY, y + emitter.getParticleHeight());
+    }
+
+    /**
+     * Draws the particles.
+     * @param graphics the Graphics object with which to draw
+     * @param bounds reused to pass the location of each particle on the screen
+     * @param translationX the x translation of the Scene
+     * @param translationY the y translation of the Scene
+     * @param scale the scale of the Scene
+     */
+    final void draw(final Graphics graphics, final Bounds bounds, final int translationX, final int translationY,
+            final float scale) {
+        final int width = Math.max(1, (int) (emitter.getParticleWidth() * scale));
+        final int height = Math.max(1, (int) (emitter.getParticleHeight() * scale));
+        for (int i = 0; i < count; i++) {
+            bounds.setPosition((int) ((x[i] - translationX) * scale), (int) ((y[i] - translationY) * scale));
+            bounds.setSize(width, height);
+            emitter.drawParticle(graphics, bounds, age[i]);
+        }
+    }
+}
@@ -16,6 +16,8 @@
  */
 package net.blinz.dog.zone;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Vector;
 import net.blinz.core.util.Bounds;
 
@@ -33,8 +35,94 @@ final class Sector extends ZoneObject {
     private final UnorderedList<BaseSprite> memberSprites = new UnorderedList<BaseSprite>();
     private final Vector<BaseSprite> addedSprites = new Vector<BaseSprite>();
     private final Vector<BaseSprite> removedSprites = new Vector<BaseSprite>();
+    /**
+     * The IDs the removed sprites had when they were removed, guarded by
+     * removedSprites.
+     */
+    private int[] removedIds = new int[16];
+    /**
+     * The added and removed sprites of the current cycle, shared by all the
+     * Cameras covering this Sector.
+     */
+    private final SectorDigest digest = new SectorDigest();
+    /**
+     * Refreshed at the end of each post-update, read by Cameras in the next
+     * Camera update.
+     */
+    private final SectorAggregate aggregate = new SectorAggregate();
+    /**
+     * Scratch space holding the sprites a Broadcast is delivered to.
+     */
+    private BaseSprite[] recipients = new BaseSprite[0];
     private final UnorderedList<CollidableSprite> collidibleSprites = new UnorderedList<CollidableSprite>();
+    /**
+     * The Kinematics of the KinematicSprites in this Sector.
+     */
+    private final UnorderedList<Kinematics> kinematics = new UnorderedList<Kinematics>();
     private final Bounds bounds = new Bounds();
+    /**
+     * Sprites bucketed for this Sector by the ingest stage, added in bulk.
+     */
+    private final ArrayList<BaseSprite> ingestedSprites = new ArrayList<BaseSprite>();
+    /**
+     * Sprites bucketed for this Sector by the deletion stage.
+     */
+    private final ArrayList<BaseSprite> deletedSprites = new ArrayList<BaseSprite>();
+    /**
+     * Sleeping sprites that have woken and are to be updated again.
+     */
+    private final ArrayList<BaseSprite> wokenSprites = new ArrayList<BaseSprite>();
+    /**
+     * Sprites with positions staged during the update in a double buffered Zone.
+     */
+    private final ArrayList<BaseSprite> stagedSprites = new ArrayList<BaseSprite>();
+    /**
+     * Sprites that moved within or into this Sector since the start of its
+     * update this cycle, recorded only while the Zone has ProximitySensors or
+     * TriggerRegions. Guarded by its own monitor along with earlierMovedSprites.
+     */
+    private final ArrayList<BaseSprite> movedSprites = new ArrayList<BaseSprite>();
+    /**
+     * The sprites that moved within or into this Sector from the start of its
+     * last update to the start of this one, kept for a cycle so moves made
+     * after an AreaWatcher ran are still seen by it.
+     */
+    private final ArrayList<BaseSprite> earlierMovedSprites = new ArrayList<BaseSprite>();
+    /**
+     * The TriggerRegions whose top left corners are in this Sector.
+     */
+    private final ArrayList<TriggerRegion> triggerRegions = new ArrayList<TriggerRegion>();
+    /**
+     * Guards the mailbox and mailRecipients, kept apart from this Sector's own
+     * monitor so posting mail never waits on Camera or sprite bookkeeping.
+     */
+    private final Object mailLock = new Object();
+    /**
+     * Broadcasts posted to this Sector, delivered at the start of its next update.
+     */
+    private ArrayList<Broadcast> mailbox = new ArrayList<Broadcast>();
+    /**
+     * The Broadcasts being delivered, swapped with the mailbox each update.
+     */
+    private ArrayList<Broadcast> deliveries = new ArrayList<Broadcast>();
+    /**
+     * Sprites with Messages in their mailboxes, drained at the start of the
+     * next update.
+     */
+    private ArrayList<BaseSprite> mailRecipients = new ArrayList<BaseSprite>();
+    /**
+     * The sprites being drained, swapped with mailRecipients each update.
+     */
+    private ArrayList<BaseSprite> drainedRecipients = new ArrayList<BaseSprite>();
+    /**
+     * The number of Cameras covering this Sector.
+     */
+    private int cameraCount = 0;
+    /**
+     * The number of cycles between updates of the ElapsedUpdatingSprites in
+     * this Sector, 1 for every cycle.
+     */
+    int updateInterval = 1;
 
     /**
      * Constructor
@@ -57,44 +145,66 @@ final class Sector extends ZoneObject {
     }
 
     /**
-     * Gets all the sprites added to this sector in the current cycle.
-     * @return all the sprites added to this sector in the current cycle
-     */
-    final Vector<BaseSprite> getAddedSprites() {
-        return addedSprites;
-    }
-
-    /**
-     * Gets all the sprites removed from this sector in the current cycle.
-     * @return all the sprites removed from this sector in the current cycle
+     * Gets the digest of the sprites added to and removed from this Sector in
+     * the current cycle. Built by the first Camera to ask for it each cycle
+     * and shared by the rest.
+     * @return the digest of the current cycle
      */
-    final Vector<BaseSprite> getRemovedSprites() {
-        return removedSprites;
+    final SectorDigest getDigest() {
+        final long cycle = getData().zoneCycles;
+        if (digest.cycle != cycle) {
+            synchronized (digest) {
+                if (digest.cycle != cycle) {
+                    synchronized (removedSprites) {
+                        digest.build(addedSprites, removedSprites, removedIds);
+                    }
+                    digest.cycle = cycle;
+                }
+            }
+        }
+        return digest;
     }
 
     /**
      * Updates the sprites in this Sector.
      */
     final void update() {
+        turnOverMovedSprites();
+        if (!mailRecipients.isEmpty()) {
+            deliverMessages();
+        }
+        if (!mailbox.isEmpty()) {
+            deliverBroadcasts();
+        }
+
+        //the Zone time to update ElapsedUpdatingSprites to, -1 to skip them,
+        //staggered by position to spread the reduced updates over the cycles
+        final long cycle = getData().zoneCycles;
+        final long time = updateInterval == 1 || (cycle + getXIndex() + getYIndex()) % updateInterval == 0
+                ? getData().zoneTime : -1;
+
         if (!getData().isClient() && !getData().isServer()) {
             for (int i = 0; i < updatingSprites.size(); i++) {
-                updatingSprites.get(i).update();
+                updateSprite(updatingSprites.get(i), time);
             }
         } else if (getData().isServer()) {
             for (int i = 0; i < updatingSprites.size(); i++) {
-                updatingSprites.get(i).update();
-                updatingSprites.get(i).serverUpdate();
+                if (updateSprite(updatingSprites.get(i), time)) {
+                    updatingSprites.get(i).serverUpdate();
+                }
             }
         } else if (getData().isClient()) {
             for (int i = 0; i < updatingSprites.size(); i++) {
-                updatingSprites.get(i).update();
-                updatingSprites.get(i).clientUpdate();
+                if (updateSprite(updatingSprites.get(i), time)) {
+                    updatingSprites.get(i).clientUpdate();
+                }
             }
         } else {
             for (int i = 0; i < updatingSprites.size(); i++) {
-                updatingSprites.get(i).update();
-                updatingSprites.get(i).clientUpdate();
-                updatingSprites.get(i).serverUpdate();
+                if (updateSprite(updatingSprites.get(i), time)) {
+                    updatingSprites.get(i).clientUpdate();
+                    updatingSprites.get(i).serverUpdate();
+                }
             }
         }
     }
@@ -103,11 +213,28 @@ final class Sector extends ZoneObject {
      * Takes care of modifications made during the update.
      */
     final void postUpdate() {
+        if (!triggerRegions.isEmpty()) {
+            final ZoneData zoneData = getData();
+            synchronized (triggerRegions) {
+                for (int i = 0; i < triggerRegions.size(); i++) {
+                    triggerRegions.get(i).update(zoneData);
+                }
+            }
+        }
         manageUpdatingSprites();
+        aggregate.update(memberSprites.size(), updatingSprites.size(), addedSprites.size(), removedSprites.size());
         addedSprites.clear();
         removedSprites.clear();
     }
 
+    /**
+     * Gets the summary of the sprites in this Sector as of its last post-update.
+     * @return the summary of the sprites in this Sector
+     */
+    final SectorAggregate getAggregate() {
+        return aggregate;
+    }
+
     /**
      * Gets the list of sprites in this Sector. This is the actual list that the
      * Sector relies on, so don't access it during the Sector update phases or
@@ -182,31 +309,383 @@ final class Sector extends ZoneObject {
      * @param sprite the sprite to be added to this Sector
      */
     final void addSprite(final BaseSprite sprite) {
-        if (sprite instanceof UpdatingSprite) {
+        if (sprite instanceof UpdatingSprite && sprite.sleep == BaseSprite.AWAKE) {
             updatingSpritesToAdd.add((UpdatingSprite) sprite);
         }
         if (sprite instanceof CollidableSprite) {
-            collidibleSprites.add((CollidableSprite) sprite);
+            synchronized (collidibleSprites) {
+                sprite.collidableIndex = collidibleSprites.size();
+                collidibleSprites.add((CollidableSprite) sprite);
+            }
+        }
+        if (sprite instanceof KinematicSprite) {
+            addKinematics(sprite);
+        }
+        synchronized (memberSprites) {
+            sprite.sectorIndex = memberSprites.size();
+            memberSprites.add(sprite);
         }
-        memberSprites.add(sprite);
         addedSprites.add(sprite);
+        if (getData().tracksMoves()) {
+            sprite.noteMoved(this, getData().zoneCycles);
+        }
+    }
+
+    /**
+     * Buckets the given sprite to be added to this Sector in the ingest stage.
+     * @param sprite the sprite to be added to this Sector
+     */
+    final void queueIngestedSprite(final BaseSprite sprite) {
+        synchronized (ingestedSprites) {
+            ingestedSprites.add(sprite);
+        }
+    }
+
+    /**
+     * Adds the sprites bucketed for this Sector in one pass.
+     */
+    final void addIngestedSprites() {
+        if (ingestedSprites.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < ingestedSprites.size(); i++) {
+            final BaseSprite sprite = ingestedSprites.get(i);
+            if (sprite instanceof UpdatingSprite && sprite.sleep == BaseSprite.AWAKE) {
+                updatingSpritesToAdd.add((UpdatingSprite) sprite);
+            }
+            if (sprite instanceof CollidableSprite) {
+                synchronized (collidibleSprites) {
+                    sprite.collidableIndex = collidibleSprites.size();
+                    collidibleSprites.add((CollidableSprite) sprite);
+                }
+            }
+            if (sprite instanceof KinematicSprite) {
+                addKinematics(sprite);
+            }
+        }
+        synchronized (memberSprites) {
+            final int start = memberSprites.size();
+            memberSprites.addAll(ingestedSprites);
+            for (int i = 0; i < ingestedSprites.size(); i++) {
+                ingestedSprites.get(i).sectorIndex = start + i;
+            }
+        }
+        addedSprites.addAll(ingestedSprites);
+        if (getData().tracksMoves()) {
+            synchronized (movedSprites) {
+                movedSprites.addAll(ingestedSprites);
+            }
+        }
+        ingestedSprites.clear();
+    }
+
+    /**
+     * Stops updating the given sprite, which has gone to sleep.
+     * @param sprite the sprite going to sleep
+     */
+    final void sleepSprite(final UpdatingSprite sprite) {
+        updatingSpritesToRemove.add(sprite);
+    }
+
+    /**
+     * Queues the given woken sprite to be updated again from the next cycle.
+     * @param sprite the sprite that woke
+     */
+    final void queueWokenSprite(final BaseSprite sprite) {
+        synchronized (wokenSprites) {
+            wokenSprites.add(sprite);
+        }
+    }
+
+    /**
+     * Resumes updating the sprites that woke this cycle and are still awake
+     * and in this Sector.
+     */
+    final void addWokenSprites() {
+        if (wokenSprites.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < wokenSprites.size(); i++) {
+            final BaseSprite sprite = wokenSprites.get(i);
+            //a sprite woken more than once this cycle is queued more than once
+            if (sprite.sleep == BaseSprite.AWAKE && isMember(sprite)) {
+                //time spent asleep is not simulated
+                sprite.lastUpdateTime = getData().zoneTime;
+                startUpdating((UpdatingSprite) sprite);
+            }
+        }
+        wokenSprites.clear();
+    }
+
+    /**
+     * Buckets the given deleted sprite to be removed from this Sector in the
+     * deletion stage.
+     * @param sprite the sprite to be deleted
+     */
+    final void queueDeletedSprite(final BaseSprite sprite) {
+        synchronized (deletedSprites) {
+            deletedSprites.add(sprite);
+        }
+    }
+
+    /**
+     * Removes the deleted sprites bucketed for this Sector and releases them
+     * from the Zone.
+     */
+    final void removeDeletedSprites() {
+        if (deletedSprites.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < deletedSprites.size(); i++) {
+            final BaseSprite sprite = deletedSprites.get(i);
+            //sprites deleted more than once are only removed once
+            if (removeSprite(sprite)) {
+                sprite.sleep = BaseSprite.AWAKE;
+                sprite.staged = false;
+                getData().releaseSprite(sprite);
+                sprite.onDelete();
+                if (!(sprite instanceof RecyclableSprite) || !getData().spritePool.recycle(sprite)) {
+                    sprite.dropZone(getZone());
+                }
+            }
+        }
+        deletedSprites.clear();
     }
 
     /**
      * Removes the given sprite from this sector.
      * @param sprite the sprite to remove
+     * @return true if the sprite was a member of this Sector, false otherwise
      */
-    final void removeSprite(final BaseSprite sprite) {
+    final boolean removeSprite(final BaseSprite sprite) {
+        synchronized (memberSprites) {
+            if (!isMember(sprite)) {
+                return false;
+            }
+            final int i = sprite.sectorIndex;
+            //the last sprite takes the place of the removed one
+            memberSprites.remove(i);
+            if (i < memberSprites.size()) {
+                memberSprites.get(i).sectorIndex = i;
+            }
+            sprite.sectorIndex = -1;
+        }
         if (sprite instanceof UpdatingSprite) {
             updatingSpritesToRemove.add((UpdatingSprite) sprite);
         }
         if (sprite instanceof CollidableSprite) {
             synchronized (collidibleSprites) {
-                collidibleSprites.remove((CollidableSprite) sprite);
+                final int i = sprite.collidableIndex;
+                collidibleSprites.remove(i);
+                if (i < collidibleSprites.size()) {
+                    ((BaseSprite) collidibleSprites.get(i)).collidableIndex = i;
+                }
+                sprite.collidableIndex = -1;
             }
         }
-        memberSprites.remove(sprite);
-        removedSprites.add(sprite);
+        if (sprite instanceof KinematicSprite) {
+            final Kinematics k = ((KinematicSprite) sprite).getKinematics();
+            synchronized (kinematics) {
+                final int i = k.sectorIndex;
+                kinematics.remove(i);
+                if (i < kinematics.size()) {
+                    kinematics.get(i).sectorIndex = i;
+                }
+                k.sectorIndex = -1;
+            }
+        }
+        synchronized (removedSprites) {
+            final int n = removedSprites.size();
+            if (n == removedIds.length) {
+                removedIds = Arrays.copyOf(removedIds, n * 2);
+            }
+            removedIds[n] = sprite.id;
+            removedSprites.add(sprite);
+        }
+        return true;
+    }
+
+    /**
+     * Records that the given sprite has staged a new position.
+     * @param sprite the sprite that staged a new position
+     */
+    final void stageSprite(final BaseSprite sprite) {
+        synchronized (stagedSprites) {
+            stagedSprites.add(sprite);
+        }
+    }
+
+    /**
+     * Moves the sprites that staged new positions during the update to those
+     * positions. Sprites that are in the Zone but not yet in a Sector, having
+     * been ingested but not bucketed, keep their staged moves until the next
+     * commit.
+     */
+    final void commitStagedSprites() {
+        if (stagedSprites.isEmpty()) {
+            return;
+        }
+        synchronized (stagedSprites) {
+            int kept = 0;
+            for (int i = 0; i < stagedSprites.size(); i++) {
+                final BaseSprite sprite = stagedSprites.get(i);
+                if (!sprite.staged) {
+                    continue;
+                }
+                if (sprite.sectorIndex != -1) {
+                    sprite.moveTo(sprite.stagedX, sprite.stagedY);
+                    sprite.staged = false;
+                } else if (sprite.id != -1) {
+                    stagedSprites.set(kept++, sprite);
+                } else {
+                    //sprites removed from the Zone since staging are left where they are
+                    sprite.staged = false;
+                }
+            }
+            for (int i = stagedSprites.size() - 1; i >= kept; i--) {
+                stagedSprites.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Records that the given sprite moved within or into this Sector.
+     * @param sprite the sprite that moved
+     */
+    final void noteMovedSprite(final BaseSprite sprite) {
+        synchronized (movedSprites) {
+            movedSprites.add(sprite);
+        }
+    }
+
+    /**
+     * Gets the sprites that moved within or into this Sector since the start
+     * of its update this cycle. Don't modify it.
+     * @return the sprites that moved within or into this Sector
+     */
+    final ArrayList<BaseSprite> getMovedSprites() {
+        return movedSprites;
+    }
+
+    /**
+     * Gets the sprites that moved within or into this Sector during the cycle
+     * before, up to the start of its update this cycle. Don't modify it.
+     * @return the sprites that moved within or into this Sector earlier
+     */
+    final ArrayList<BaseSprite> getEarlierMovedSprites() {
+        return earlierMovedSprites;
+    }
+
+    /**
+     * Moves the record of moved sprites into earlierMovedSprites, dropping
+     * the moves recorded a cycle before, which every AreaWatcher has seen.
+     */
+    private final void turnOverMovedSprites() {
+        synchronized (movedSprites) {
+            if (earlierMovedSprites.isEmpty() && movedSprites.isEmpty()) {
+                return;
+            }
+            earlierMovedSprites.clear();
+            earlierMovedSprites.addAll(movedSprites);
+            movedSprites.clear();
+        }
+    }
+
+    /**
+     * Queues the given Broadcast for delivery at this Sector's next
+     * update.
+     * @param broadcast the Broadcast to deliver
+     */
+    final void postBroadcast(final Broadcast broadcast) {
+        synchronized (mailLock) {
+            mailbox.add(broadcast);
+        }
+    }
+
+    /**
+     * Queues the given sprite to have its mailbox drained at the start of this
+     * Sector's next update.
+     * @param sprite the sprite with new Messages
+     */
+    final void queueMailRecipient(final BaseSprite sprite) {
+        synchronized (mailLock) {
+            mailRecipients.add(sprite);
+        }
+    }
+
+    /**
+     * Adds the given TriggerRegion to this Sector.
+     * @param region the TriggerRegion to add
+     */
+    final void addTriggerRegion(final TriggerRegion region) {
+        synchronized (triggerRegions) {
+            triggerRegions.add(region);
+        }
+    }
+
+    /**
+     * Removes the given TriggerRegion from this Sector.
+     * @param region the TriggerRegion to remove
+     */
+    final void removeTriggerRegion(final TriggerRegion region) {
+        synchronized (triggerRegions) {
+            triggerRegions.remove(region);
+        }
+    }
+
+    /**
+     * Moves the KinematicSprites in this Sector by their velocities. Sprites
+     * that move into a Sector that has yet to be integrated this cycle are not
+     * moved again.
+     */
+    final void integrate() {
+        final ZoneData zoneData = getData();
+        final long cycle = zoneData.zoneCycles;
+        int i = 0;
+        while (i < kinematics.size()) {
+            final Kinematics k = kinematics.get(i);
+            k.integrate(zoneData, cycle);
+            //a sprite that left this Sector was replaced by the last one in the list
+            if (i < kinematics.size() && kinematics.get(i) == k) {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Records that another Camera covers this Sector.
+     */
+    synchronized final void addCamera() {
+        if (cameraCount++ == 0) {
+            getData().cameraCoverageChanged = true;
+        }
+    }
+
+    /**
+     * Records that a Camera no longer covers this Sector.
+     */
+    synchronized final void removeCamera() {
+        if (--cameraCount == 0) {
+            getData().cameraCoverageChanged = true;
+        }
+    }
+
+    /**
+     * Indicates whether or not any Camera covers this Sector.
+     * @return true if at least one Camera covers this Sector, false otherwise
+     */
+    final boolean isWatched() {
+        return cameraCount > 0;
+    }
+
+    /**
+     * Indicates whether or not the given sprite is in this Sector.
+     * @param sprite the sprite to check for
+     * @return true if the given sprite is in this Sector, false otherwise
+     */
+    final boolean isMember(final BaseSprite sprite) {
+        final int i = sprite.sectorIndex;
+        return i > -1 && i < memberSprites.size() && memberSprites.get(i) == sprite;
     }
 
     /**
@@ -236,7 +715,7 @@ final class Sector extends ZoneObject {
      * @param sprite the UpdatingSprite to be removed
      */
     synchronized final void deleteUpdatingSprite(final UpdatingSprite sprite) {
-        if (!updatingSprites.remove(sprite)) {
+        if (!stopUpdating(sprite)) {
             updatingSpritesToAdd.remove(sprite);
         }
     }
@@ -300,6 +779,47 @@ final class Sector extends ZoneObject {
         updatingSpritesToAdd.trimToSize();
         updatingSpritesToRemove.trimToSize();
         addedSprites.trimToSize();
+        synchronized (ingestedSprites) {
+            ingestedSprites.trimToSize();
+        }
+        synchronized (deletedSprites) {
+            deletedSprites.trimToSize();
+        }
+        synchronized (wokenSprites) {
+            wokenSprites.trimToSize();
+        }
+        synchronized (stagedSprites) {
+            stagedSprites.trimToSize();
+        }
+        synchronized (movedSprites) {
+            movedSprites.trimToSize();
+            earlierMovedSprites.trimToSize();
+        }
+    }
+
+    /**
+     * Updates the given sprite at the rate this Sector is updated at. The time
+     * passed to an ElapsedUpdatingSprite is measured from its own last update,
+     * so it neither gains nor loses time by moving between Sectors.
+     * @param sprite the sprite to update
+     * @param time the Zone time to update ElapsedUpdatingSprites to, -1 to skip them
+     * @return true if the sprite was updated, false if it was skipped this cycle
+     */
+    private final boolean updateSprite(final UpdatingSprite sprite, final long time) {
+        if (sprite instanceof ElapsedUpdatingSprite) {
+            if (time < 0) {
+                return false;
+            }
+            final BaseSprite s = (BaseSprite) sprite;
+            final long elapsed = time - s.lastUpdateTime;
+            s.lastUpdateTime = time;
+            if (updateInterval > 1) {
+                ((ElapsedUpdatingSprite) sprite).update(elapsed);
+                return true;
+            }
+        }
+        sprite.update();
+        return true;
     }
 
     /**
@@ -308,12 +828,121 @@ final class Sector extends ZoneObject {
     private final void manageUpdatingSprites() {
         for (int i = updatingSpritesToRemove.size() - 1; i > -1; i--) {
             final UpdatingSprite s = updatingSpritesToRemove.remove(i);
-            if (!updatingSprites.remove(s)) {
+            if (!stopUpdating(s)) {
                 updatingSpritesToAdd.remove(s);
             }
         }
         for (int i = updatingSpritesToAdd.size() - 1; i > -1; i--) {
-            updatingSprites.add(updatingSpritesToAdd.remove(i));
+            startUpdating(updatingSpritesToAdd.remove(i));
+        }
+    }
+
+    /**
+     * Adds the given sprite to the updating list unless it is already on it.
+     * @param sprite the sprite to update every cycle
+     */
+    private final void startUpdating(final UpdatingSprite sprite) {
+        final BaseSprite s = (BaseSprite) sprite;
+        if (s.updatingSector != this) {
+            s.updatingSector = this;
+            updatingSprites.add(sprite);
+        }
+    }
+
+    /**
+     * Removes the given sprite from the updating list.
+     * @param sprite the sprite to stop updating
+     * @return true if the sprite was on the updating list, false otherwise
+     */
+    private final boolean stopUpdating(final UpdatingSprite sprite) {
+        if (!updatingSprites.remove(sprite)) {
+            return false;
+        }
+        //the Sector the sprite moved to may already have taken it on
+        BaseSprite.UPDATING_SECTOR.compareAndSet((BaseSprite) sprite, this, null);
+        return true;
+    }
+
+    /**
+     * Adds the Kinematics of the given KinematicSprite to this Sector.
+     * @param sprite the KinematicSprite being added to this Sector
+     */
+    private final void addKinematics(final BaseSprite sprite) {
+        final Kinematics k = ((KinematicSprite) sprite).getKinematics();
+        k.sprite = sprite;
+        synchronized (kinematics) {
+            k.sectorIndex = kinematics.size();
+            kinematics.add(k);
+        }
+    }
+
+    /**
+     * Delivers the Broadcasts posted since the last update to the sprites in
+     * this Sector, on the thread updating it. The sprites are copied first so
+     * that sprites moved by a receiver are neither skipped nor delivered to
+     * twice by this Sector, and sprites that already had Broadcasts delivered
+     * this cycle by the Sector they came from are skipped. Broadcasts posted
+     * while delivering wait for the next update.
+     */
+    private final void deliverBroadcasts() {
+        synchronized (mailLock) {
+            final ArrayList<Broadcast> posted = mailbox;
+            mailbox = deliveries;
+            deliveries = posted;
+        }
+        int count;
+        synchronized (memberSprites) {
+            count = memberSprites.size();
+            if (recipients.length < count) {
+                recipients = new BaseSprite[count * 2];
+            }
+            for (int n = 0; n < count; n++) {
+                recipients[n] = memberSprites.get(n);
+            }
+        }
+        final long cycle = getData().zoneCycles;
+        for (int n = 0; n < count; n++) {
+            final BaseSprite sprite = recipients[n];
+            if (sprite.markBroadcastCycle(cycle)) {
+                for (int i = 0; i < deliveries.size(); i++) {
+                    deliveries.get(i).deliver(sprite);
+                }
+            }
+        }
+        deliveries.clear();
+        Arrays.fill(recipients, 0, count, null);
+    }
+
+    /**
+     * Delivers the Messages posted to the sprites of this Sector since the last
+     * update. Sprites that have since moved to another Sector are passed on to
+     * it so they are only ever handled by the thread updating them.
+     */
+    private final void deliverMessages() {
+        synchronized (mailLock) {
+            final ArrayList<BaseSprite> queued = mailRecipients;
+            mailRecipients = drainedRecipients;
+            drainedRecipients = queued;
+        }
+        final ZoneData zoneData = getData();
+        for (int i = 0; i < drainedRecipients.size(); i++) {
+            final BaseSprite sprite = drainedRecipients.get(i);
+            if (sprite.id != -1 && !isMember(sprite)) {
+                zoneData.getSectorOf(sprite.getX(), sprite.getY()).queueMailRecipient(sprite);
+                continue;
+            }
+            Message message = sprite.takeMessages();
+            while (message != null) {
+                final Message next = message.next;
+                message.next = null;
+                //messages to a sprite that left the Zone are dropped
+                if (sprite.getHandle() == message.recipient) {
+                    ((MessageReceiver) sprite).receiveMessage(message);
+                }
+                zoneData.messagePool.recycle(message);
+                message = next;
+            }
         }
+        drainedRecipients.clear();
     }
 }
@@ -0,0 +1,85 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+/**
+ * A summary of the sprites in a Sector, kept by the Sector and refreshed at the
+ * end of each of its updates from counts it maintains as sprites come, go, fall
+ * asleep and wake, so reading it costs the same however many sprites the Sector
+ * holds. Cameras zoomed out past their aggregation zoom draw it in place of
+ * the sprites.
+ * @author Blinz
+ */
+public final class SectorAggregate {
+
+    private int population;
+    private int awake;
+    private int added;
+    private int removed;
+
+    /**
+     * Constructor
+     */
+    SectorAggregate() {
+    }
+
+    /**
+     * Gets the number of sprites in the Sector.
+     * @return the number of sprites in the Sector
+     */
+    public final int getPopulation() {
+        return population;
+    }
+
+    /**
+     * Gets the number of UpdatingSprites in the Sector that are awake.
+     * @return the number of awake UpdatingSprites in the Sector
+     */
+    public final int getAwake() {
+        return awake;
+    }
+
+    /**
+     * Gets the number of sprites that entered the Sector in the last cycle.
+     * @return the number of sprites that entered the Sector
+     */
+    public final int getAdded() {
+        return added;
+    }
+
+    /**
+     * Gets the number of sprites that left the Sector in the last cycle.
+     * @return the number of sprites that left the Sector
+     */
+    public final int getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Updates the counts of this aggregate.
+     * @param population the number of sprites in the Sector
+     * @param awake the number of awake UpdatingSprites in the Sector
+     * @param added the number of sprites that entered the Sector
+     * @param removed the number of sprites that left the Sector
+     */
+    final void update(final int population, final int awake, final int added, final int removed) {
+        this.population = population;
+        this.awake = awake;
+        this.added = added;
+        this.removed = removed;
+    }
+}
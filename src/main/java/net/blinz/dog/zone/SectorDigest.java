@@ -0,0 +1,72 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+import java.util.Vector;
+
+/**
+ * The sprites added to and removed from a Sector in a cycle, copied once per
+ * cycle for every Camera covering the Sector to read.
+ * @author Blinz
+ */
+final class SectorDigest {
+
+    /**
+     * The Zone cycle this digest was built for, written last so that a Camera
+     * seeing the current cycle sees the whole digest.
+     */
+    volatile long cycle = -1;
+    BaseSprite[] added = new BaseSprite[16];
+    int addedCount;
+    BaseSprite[] removed = new BaseSprite[16];
+    /**
+     * The IDs the removed sprites had when they were removed.
+     */
+    int[] removedIds = new int[16];
+    int removedCount;
+
+    /**
+     * Copies the given lists of sprites into this digest.
+     * @param addedSprites the sprites added to the Sector
+     * @param removedSprites the sprites removed from the Sector
+     * @param ids the IDs the removed sprites had when they were removed
+     */
+    final void build(final Vector<BaseSprite> addedSprites, final Vector<BaseSprite> removedSprites, final int[] ids) {
+        addedCount = addedSprites.size();
+        if (added.length < addedCount) {
+            added = new BaseSprite[addedCount * 2];
+        }
+        for (int i = 0; i < addedCount; i++) {
+            added[i] = addedSprites.get(i);
+        }
+        for (int i = addedCount; i < added.length && added[i] != null; i++) {
+            added[i] = null;
+        }
+        removedCount = removedSprites.size();
+        if (removed.length < removedCount) {
+            removed = new BaseSprite[removedCount * 2];
+            removedIds = new int[removedCount * 2];
+        }
+        for (int i = 0; i < removedCount; i++) {
+            removed[i] = removedSprites.get(i);
+        }
+        System.arraycopy(ids, 0, removedIds, 0, removedCount);
+        for (int i = removedCount; i < removed.length && removed[i] != null; i++) {
+            removed[i] = null;
+        }
+    }
+}
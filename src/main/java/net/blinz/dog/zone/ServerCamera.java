@@ -18,7 +18,6 @@ package net.blinz.dog.zone;
 
 import java.net.Socket;
 import java.util.ArrayList;
-import java.util.HashMap;
 
 /**
  * A Camera for monitoring server Zones.
@@ -26,7 +25,10 @@ import java.util.HashMap;
  */
 public class ServerCamera extends BaseCamera {
 
-    private final HashMap<BaseSprite, CameraSprite> spriteMap = new HashMap<BaseSprite, CameraSprite>();
+    /**
+     * The CameraSprites of this Camera indexed by sprite ID.
+     */
+    private CameraSprite[] sprites = new CameraSprite[0];
     private Socket socket;
 
     /**
@@ -43,13 +45,26 @@ public class ServerCamera extends BaseCamera {
 
     @Override
     final void addSprite(final CameraSprite sprite) {
-        spriteMap.put(sprite.getSprite(), sprite);
+        final int id = sprite.spriteId;
+        if (id < 0) {
+            return;
+        }
+        if (id >= sprites.length) {
+            final CameraSprite[] s = new CameraSprite[Math.max(id + 1, getData().spriteTable.capacity())];
+            System.arraycopy(sprites, 0, s, 0, sprites.length);
+            sprites = s;
+        }
+        sprites[id] = sprite;
     }
 
     @Override
     final void removeOrphanedSprites(final ArrayList<CameraSprite> orphans) {
         for (int i = 0; i < orphans.size(); i++) {
-            spriteMap.remove(orphans.get(i).getSprite());
+            final int id = orphans.get(i).spriteId;
+            //the ID may already belong to a sprite added since
+            if (id > -1 && sprites[id] == orphans.get(i)) {
+                sprites[id] = null;
+            }
         }
     }
 
@@ -109,7 +109,7 @@ public abstract class Sprite extends BaseSprite {
      * @param distance the distance this is to move
      */
     public final void moveDown(final int distance) {
-        setY(y + distance);
+        setY(getNextY() + distance);
     }
 
     /**
@@ -117,7 +117,7 @@ public abstract class Sprite extends BaseSprite {
      * @param distance the distance this is to move
      */
     public final void moveUp(final int distance) {
-        setY(y - distance);
+        setY(getNextY() - distance);
     }
 
     /**
@@ -125,7 +125,7 @@ public abstract class Sprite extends BaseSprite {
      * @param distance the distance this is to move
      */
     public final void moveRight(final int distance) {
-        setX(x + distance);
+        setX(getNextX() + distance);
     }
 
     /**
@@ -133,7 +133,7 @@ public abstract class Sprite extends BaseSprite {
      * @param distance the distance this is to move
      */
     public final void moveLeft(final int distance) {
-        setX(x - distance);
+        setX(getNextX() - distance);
     }
 
     /**
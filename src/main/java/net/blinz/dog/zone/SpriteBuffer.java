@@ -0,0 +1,99 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+/**
+ * A growable array of sprites that the Zone's threads can work through
+ * concurrently, each thread taking blocks of it at a time.
+ * @author Blinz
+ */
+final class SpriteBuffer {
+
+    private final int blockSize;
+    private BaseSprite[] sprites = new BaseSprite[64];
+    private int size = 0;
+    /**
+     * Used to track the next block to be taken.
+     */
+    private int blockIndex = 0;
+
+    /**
+     * Constructor
+     * @param blockSize the number of sprites in each block
+     */
+    SpriteBuffer(final int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Adds the given sprite to the end of this buffer.
+     * @param sprite the sprite to be added
+     */
+    final void add(final BaseSprite sprite) {
+        if (size == sprites.length) {
+            final BaseSprite[] s = new BaseSprite[size * 2];
+            System.arraycopy(sprites, 0, s, 0, size);
+            sprites = s;
+        }
+        sprites[size++] = sprite;
+    }
+
+    /**
+     * Empties this buffer. The sprites should all have been taken first.
+     */
+    final void clear() {
+        size = 0;
+        blockIndex = 0;
+    }
+
+    /**
+     * Gets the number of sprites in this buffer.
+     * @return the number of sprites in this buffer
+     */
+    final int size() {
+        return size;
+    }
+
+    /**
+     * Removes the reference to the sprite at the given index and returns it.
+     * @param i the index of the sprite
+     * @return the sprite at the given index
+     */
+    final BaseSprite take(final int i) {
+        final BaseSprite sprite = sprites[i];
+        sprites[i] = null;
+        return sprite;
+    }
+
+    /**
+     * Gets the number of sprites in each block.
+     * @return the number of sprites in each block
+     */
+    final int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Used to help concurrently process this buffer.
+     * @return the index of the next block to be processed
+     */
+    final synchronized int nextBlock() {
+        final int i = blockIndex;
+        blockIndex += blockSize;
+        return i;
+    }
+}
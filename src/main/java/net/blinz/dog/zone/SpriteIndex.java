@@ -0,0 +1,155 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+import java.util.List;
+
+/**
+ * A dense list of the sprites of a Zone that are of a certain type or carry a
+ * certain tag, kept up to date as sprites are added, deleted and tagged, so
+ * they can be visited without scanning every Sector.
+ *
+ * The list only shuffles while sprites are deleted or untagged, so it can be
+ * iterated by index from sprite updates and UpdatingObjects. To share the
+ * work between threads have each copy out its part with getPartition.
+ * @author Blinz
+ */
+public final class SpriteIndex<T> {
+
+    private BaseSprite[] members = new BaseSprite[16];
+    private int size = 0;
+    /**
+     * The position of each member plus one, indexed by sprite ID, 0 for sprites
+     * that are not members.
+     */
+    private int[] positions = new int[0];
+
+    /**
+     * Constructor
+     */
+    SpriteIndex() {
+    }
+
+    /**
+     * Gets the number of sprites in this SpriteIndex.
+     * @return the number of sprites in this SpriteIndex
+     */
+    public final synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets the sprite at the given position in this SpriteIndex.
+     * @param i the position of the sprite
+     * @return the sprite at the given position, null if the position is no
+     * longer below size()
+     */
+    @SuppressWarnings("unchecked")
+    public final synchronized T get(final int i) {
+        return i < size ? (T) members[i] : null;
+    }
+
+    /**
+     * Adds the sprites at the given range of positions to the given list.
+     * @param from the first position
+     * @param to the position after the last, clamped to size()
+     * @param dest the list to add the sprites to
+     * @return the number of sprites added
+     */
+    @SuppressWarnings("unchecked")
+    public final synchronized int getRange(final int from, final int to, final List<? super T> dest) {
+        final int end = Math.min(to, size);
+        for (int i = from; i < end; i++) {
+            dest.add((T) members[i]);
+        }
+        return Math.max(0, end - from);
+    }
+
+    /**
+     * Adds one of the given number of equal parts of this SpriteIndex to the
+     * given list, so the parts can be handled by different threads. The parts
+     * only cover every sprite exactly once if the SpriteIndex does not change
+     * between the calls, as during the sprite updates of a Zone.
+     * @param part the part to get, from 0 to parts - 1
+     * @param parts the number of parts
+     * @param dest the list to add the sprites to
+     * @return the number of sprites added
+     */
+    public final synchronized int getPartition(final int part, final int parts, final List<? super T> dest) {
+        final long from = (long) size * part / parts;
+        final long to = (long) size * (part + 1) / parts;
+        return getRange((int) from, (int) to, dest);
+    }
+
+    /**
+     * Indicates whether or not the given sprite is in this SpriteIndex.
+     * @param sprite the sprite to look for
+     * @return true if the sprite is in this SpriteIndex, false otherwise
+     */
+    public final synchronized boolean contains(final BaseSprite sprite) {
+        final int id = sprite.id;
+        return id > -1 && id < positions.length && positions[id] != 0;
+    }
+
+    /**
+     * Adds the given sprite to this SpriteIndex, sprites without IDs are ignored.
+     * @param sprite the sprite to add
+     * @return true if the sprite was added, false if it already was a member
+     */
+    final synchronized boolean add(final BaseSprite sprite) {
+        final int id = sprite.id;
+        if (id < 0) {
+            return false;
+        }
+        if (id >= positions.length) {
+            final int[] p = new int[Math.max(id + 1, positions.length * 2)];
+            System.arraycopy(positions, 0, p, 0, positions.length);
+            positions = p;
+        }
+        if (positions[id] != 0) {
+            return false;
+        }
+        if (size == members.length) {
+            final BaseSprite[] m = new BaseSprite[size * 2];
+            System.arraycopy(members, 0, m, 0, size);
+            members = m;
+        }
+        members[size] = sprite;
+        positions[id] = ++size;
+        return true;
+    }
+
+    /**
+     * Removes the given sprite from this SpriteIndex. The last sprite takes its
+     * place. Must be called before the sprite loses its ID.
+     * @param sprite the sprite to remove
+     * @return true if the sprite was a member, false otherwise
+     */
+    final synchronized boolean remove(final BaseSprite sprite) {
+        final int id = sprite.id;
+        if (id < 0 || id >= positions.length || positions[id] == 0) {
+            return false;
+        }
+        final int i = positions[id] - 1;
+        final BaseSprite last = members[--size];
+        members[i] = last;
+        positions[last.id] = i + 1;
+        members[size] = null;
+        positions[id] = 0;
+        return true;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Keeps deleted RecyclableSprites, grouped by class, for reuse.
+ * @author Blinz
+ */
+final class SpritePool {
+
+    /**
+     * The number of sprites kept per class unless otherwise specified.
+     */
+    final static int DEFAULT_CAPACITY = 1024;
+    private final HashMap<Class<? extends BaseSprite>, ArrayList<BaseSprite>> pools = new HashMap<Class<? extends BaseSprite>, ArrayList<BaseSprite>>();
+    private final HashMap<Class<? extends BaseSprite>, Integer> capacities = new HashMap<Class<? extends BaseSprite>, Integer>();
+
+    /**
+     * Sets the number of sprites of the given class that will be kept.
+     * @param clss the class of the sprites
+     * @param capacity the number of sprites to keep, 0 to disable pooling for the class
+     */
+    final synchronized void setCapacity(final Class<? extends BaseSprite> clss, final int capacity) {
+        capacities.put(clss, capacity);
+        final ArrayList<BaseSprite> pool = pools.get(clss);
+        if (pool != null) {
+            while (pool.size() > capacity) {
+                pool.remove(pool.size() - 1).pooled = false;
+            }
+            pool.trimToSize();
+        }
+    }
+
+    /**
+     * Adds the given deleted sprite to the pool for its class if there is room.
+     * @param sprite the sprite to keep
+     * @return true if the sprite was kept, false otherwise
+     */
+    final synchronized boolean recycle(final BaseSprite sprite) {
+        if (sprite.pooled) {
+            return true;
+        }
+        final Class<? extends BaseSprite> clss = sprite.getClass();
+        ArrayList<BaseSprite> pool = pools.get(clss);
+        if (pool == null) {
+            pool = new ArrayList<BaseSprite>();
+            pools.put(clss, pool);
+        }
+        final Integer capacity = capacities.get(clss);
+        if (pool.size() >= (capacity == null ? DEFAULT_CAPACITY : capacity)) {
+            return false;
+        }
+        sprite.pooled = true;
+        pool.add(sprite);
+        return true;
+    }
+
+    /**
+     * Takes a kept sprite of the given class out of the pool.
+     * @param clss the class of the sprite wanted
+     * @return a kept sprite of the given class, null if there are none
+     */
+    final synchronized <T extends BaseSprite> T obtain(final Class<T> clss) {
+        final ArrayList<BaseSprite> pool = pools.get(clss);
+        if (pool == null || pool.isEmpty()) {
+            return null;
+        }
+        final BaseSprite sprite = pool.remove(pool.size() - 1);
+        sprite.pooled = false;
+        return clss.cast(sprite);
+    }
+
+    /**
+     * Trims the size of the pool lists.
+     */
+    final synchronized void trimLists() {
+        for (final ArrayList<BaseSprite> pool : pools.values()) {
+            pool.trimToSize();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+/**
+ * Gives each sprite in a Zone a dense int ID and a generation, so sprites can
+ * be kept in primitive arrays indexed by ID and referred to by long handles
+ * that stop resolving once the sprite leaves the Zone. The IDs of sprites that
+ * leave are reused, with the generation of the ID advanced each time.
+ * @author Blinz
+ */
+final class SpriteTable {
+
+    /**
+     * The handle that never resolves to a sprite.
+     */
+    final static long NO_HANDLE = -1;
+    private BaseSprite[] sprites = new BaseSprite[1024];
+    private int[] generations = new int[1024];
+    private int[] freeIds = new int[64];
+    private int freeCount = 0;
+    /**
+     * The lowest ID that has never been used.
+     */
+    private int nextId = 0;
+
+    /**
+     * Assigns the given sprite an ID if it does not already have one.
+     * @param sprite the sprite entering the Zone
+     */
+    final synchronized void register(final BaseSprite sprite) {
+        if (sprite.id != -1) {
+            return;
+        }
+        final int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            id = nextId++;
+            if (id == sprites.length) {
+                final BaseSprite[] s = new BaseSprite[id * 2];
+                System.arraycopy(sprites, 0, s, 0, id);
+                sprites = s;
+                final int[] g = new int[id * 2];
+                System.arraycopy(generations, 0, g, 0, id);
+                generations = g;
+            }
+        }
+        sprites[id] = sprite;
+        sprite.id = id;
+        sprite.generation = generations[id];
+    }
+
+    /**
+     * Frees the ID of the given sprite for reuse, handles to it will no longer
+     * resolve.
+     * @param sprite the sprite leaving the Zone
+     */
+    final synchronized void release(final BaseSprite sprite) {
+        final int id = sprite.id;
+        if (id == -1 || sprites[id] != sprite) {
+            return;
+        }
+        sprites[id] = null;
+        generations[id]++;
+        sprite.id = -1;
+        if (freeCount == freeIds.length) {
+            final int[] f = new int[freeCount * 2];
+            System.arraycopy(freeIds, 0, f, 0, freeCount);
+            freeIds = f;
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    /**
+     * Gets the sprite with the given ID.
+     * @param id the ID of the sprite
+     * @return the sprite with the given ID, null if there is none
+     */
+    final synchronized BaseSprite get(final int id) {
+        return id < 0 || id >= nextId ? null : sprites[id];
+    }
+
+    /**
+     * Gets the sprite the given handle refers to.
+     * @param handle a handle from BaseSprite.getHandle()
+     * @return the sprite, null if it has left the Zone
+     */
+    final synchronized BaseSprite get(final long handle) {
+        final int id = (int) handle;
+        if (id < 0 || id >= nextId || generations[id] != (int) (handle >>> 32)) {
+            return null;
+        }
+        return sprites[id];
+    }
+
+    /**
+     * Gets the number of IDs that have been used, every ID is less than this.
+     * @return the number of IDs that have been used
+     */
+    final synchronized int capacity() {
+        return nextId;
+    }
+}
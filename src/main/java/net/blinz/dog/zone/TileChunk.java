@@ -0,0 +1,165 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+import net.blinz.core.graphics.Graphics;
+import net.blinz.core.util.Bounds;
+
+/**
+ * A square block of tiles belonging to a TileLayer, TileLayer.CHUNK_SIZE
+ * pixels across unless the tiles are larger. The tile IDs are
+ * stored in a single primitive array that is only allocated once a tile in the
+ * chunk is set.
+ * @author Blinz
+ */
+public final class TileChunk {
+
+    private final TileLayer<?> layer;
+    private final int x, y;
+    private final int columns, rows;
+    private int[] tiles;
+    /**
+     * Indicates that the cached image of this chunk no longer matches its tiles.
+     */
+    volatile boolean dirty = true;
+    /**
+     * The Scene stamp current when a tile of this chunk last changed.
+     */
+    volatile long editStamp = Scene.currentStamp();
+
+    /**
+     * Constructor
+     * @param layer the TileLayer this chunk belongs to
+     * @param x the x coordinate of this chunk in the Zone
+     * @param y the y coordinate of this chunk in the Zone
+     * @param columns the number of tile columns in this chunk
+     * @param rows the number of tile rows in this chunk
+     */
+    TileChunk(final TileLayer<?> layer, final int x, final int y, final int columns, final int rows) {
+        this.layer = layer;
+        this.x = x;
+        this.y = y;
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    /**
+     * Gets the x coordinate of this chunk in the Zone.
+     * @return the x coordinate of this chunk in the Zone
+     */
+    public final int getX() {
+        return x;
+    }
+
+    /**
+     * Gets the y coordinate of this chunk in the Zone.
+     * @return the y coordinate of this chunk in the Zone
+     */
+    public final int getY() {
+        return y;
+    }
+
+    /**
+     * Gets the number of tile columns in this chunk.
+     * @return the number of tile columns in this chunk
+     */
+    public final int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Gets the number of tile rows in this chunk.
+     * @return the number of tile rows in this chunk
+     */
+    public final int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the width of this chunk in the Zone.
+     * @return the width of this chunk in the Zone
+     */
+    public final int getWidth() {
+        return columns * layer.getTileSize();
+    }
+
+    /**
+     * Gets the height of this chunk in the Zone.
+     * @return the height of this chunk in the Zone
+     */
+    public final int getHeight() {
+        return rows * layer.getTileSize();
+    }
+
+    /**
+     * Gets the layer this chunk is drawn on.
+     * @return the layer this chunk is drawn on
+     */
+    public final float getLayer() {
+        return layer.getLayer();
+    }
+
+    /**
+     * Gets the tile at the given column and row within this chunk.
+     * @param column the column of the tile within this chunk
+     * @param row the row of the tile within this chunk
+     * @return the ID of the tile, TileLayer.EMPTY if there is none
+     */
+    public final int getTile(final int column, final int row) {
+        final int[] t = tiles;
+        return t == null ? TileLayer.EMPTY : t[row * columns + column];
+    }
+
+    /**
+     * Indicates whether or not every tile in this chunk is empty.
+     * @return true if no tile has been set in this chunk, false otherwise
+     */
+    public final boolean isEmpty() {
+        return tiles == null;
+    }
+
+    /**
+     * Sets the tile at the given column and row within this chunk and marks
+     * this chunk as needing to be redrawn if it changed.
+     * @param column the column of the tile within this chunk
+     * @param row the row of the tile within this chunk
+     * @param tile the new tile ID
+     */
+    final void setTile(final int column, final int row, final int tile) {
+        if (tiles == null) {
+            if (tile == TileLayer.EMPTY) {
+                return;
+            }
+            tiles = new int[columns * rows];
+        }
+        final int i = row * columns + column;
+        if (tiles[i] != tile) {
+            tiles[i] = tile;
+            dirty = true;
+            editStamp = Scene.currentStamp();
+        }
+    }
+
+    /**
+     * Draws this chunk through its TileLayer's chunk cache.
+     * @param graphics the Graphics object with which to draw
+     * @param bounds the size and location of this chunk on the screen
+     */
+    final void draw(final Graphics graphics, final Bounds bounds) {
+        layer.drawChunk(graphics, this, bounds);
+    }
+}
@@ -0,0 +1,434 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import net.blinz.core.graphics.Graphics;
+import net.blinz.core.util.Bounds;
+
+/**
+ * A dense grid of tile IDs drawn on one of the Scene layers. The grid is split
+ * into TileChunks of CHUNK_SIZE pixels, and each chunk is composited into a
+ * single image that is cached until one of its tiles changes, so a tiled
+ * ground costs a handful of draws per frame instead of one sprite per tile.
+ * When a Camera is zoomed out the chunks are composited at a matching fraction
+ * of their size, so the cache holds as many pixels on screen however far out
+ * the Camera is zoomed.
+ *
+ * The type parameter is the image type of the graphics backend used to cache
+ * the composited chunks.
+ * @author Blinz
+ */
+public abstract class TileLayer<I> extends ZoneObject {
+
+    /**
+     * The tile ID of a tile that has nothing on it.
+     */
+    public final static int EMPTY = 0;
+    /**
+     * The width and height in pixels of the chunks, unless the tiles are larger.
+     */
+    public final static int CHUNK_SIZE = 256;
+    private final int tileSize;
+    private final int tileShift;
+    private float layer;
+    private TileChunk[][] chunks = new TileChunk[0][0];
+    /**
+     * Number of tiles per chunk on each axis, as a shift.
+     */
+    private final int chunkShift;
+    /**
+     * The most pixels of chunk images kept in the cache.
+     */
+    private long chunkCacheBudget = 16 << 20;
+    private long cachedPixels = 0;
+    /**
+     * The composited chunk images, in least recently drawn order. A chunk's
+     * image is only drawn or disposed of while holding the chunk's lock.
+     */
+    private final LinkedHashMap<TileChunk, ChunkImage> chunkCache = new LinkedHashMap<TileChunk, ChunkImage>(16, 0.75f, true);
+
+    /**
+     * Constructor
+     * @param tileSize the width and height of the tiles, MUST BE A POWER OF 2
+     * no larger than the Sector size of the Zone
+     * @param layer the layer to draw the tiles on
+     */
+    public TileLayer(final int tileSize, final float layer) {
+        this.tileSize = tileSize;
+        tileShift = Integer.numberOfTrailingZeros(tileSize);
+        chunkShift = Math.max(0, Integer.numberOfTrailingZeros(CHUNK_SIZE) - tileShift);
+        setLayer(layer);
+    }
+
+    /**
+     * Gets the width and height of the tiles in this TileLayer.
+     * @return the width and height of the tiles in this TileLayer
+     */
+    public final int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Gets the layer this TileLayer is drawn on.
+     * @return the layer this TileLayer is drawn on
+     */
+    public final float getLayer() {
+        return layer;
+    }
+
+    /**
+     * Sets the layer this TileLayer is drawn on. Tiles are drawn beneath the
+     * sprites that share their layer.
+     * @param layer the new layer for this TileLayer
+     */
+    public final void setLayer(float layer) {
+        if (layer < 0) {
+            layer = 0;
+        } else if (layer > 49) {
+            layer = 49;
+        }
+        this.layer = layer;
+    }
+
+    /**
+     * Gets the number of tile columns in this TileLayer.
+     * @return the number of tile columns in this TileLayer
+     */
+    public final int getColumns() {
+        return chunks.length << chunkShift;
+    }
+
+    /**
+     * Gets the number of tile rows in this TileLayer.
+     * @return the number of tile rows in this TileLayer
+     */
+    public final int getRows() {
+        return chunks.length == 0 ? 0 : chunks[0].length << chunkShift;
+    }
+
+    /**
+     * Gets the ID of the tile at the given column and row.
+     * @param column the column of the tile
+     * @param row the row of the tile
+     * @return the ID of the tile, EMPTY if there is none or it is out of range
+     */
+    public final int getTile(final int column, final int row) {
+        final TileChunk chunk = chunkOf(column, row);
+        if (chunk == null) {
+            return EMPTY;
+        }
+        final int mask = (1 << chunkShift) - 1;
+        return chunk.getTile(column & mask, row & mask);
+    }
+
+    /**
+     * Gets the ID of the tile under the given point in the Zone.
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @return the ID of the tile, EMPTY if there is none or it is out of range
+     */
+    public final int getTileAt(final int x, final int y) {
+        return getTile(x >> tileShift, y >> tileShift);
+    }
+
+    /**
+     * Sets the tile at the given column and row. Tiles out of range are ignored.
+     * @param column the column of the tile
+     * @param row the row of the tile
+     * @param tile the new tile ID
+     */
+    public final void setTile(final int column, final int row, final int tile) {
+        final TileChunk chunk = chunkOf(column, row);
+        if (chunk != null) {
+            final int mask = (1 << chunkShift) - 1;
+            chunk.setTile(column & mask, row & mask, tile);
+        }
+    }
+
+    /**
+     * Sets every tile in the given rectangle of columns and rows.
+     * @param column the first column to fill
+     * @param row the first row to fill
+     * @param columns the number of columns to fill
+     * @param rows the number of rows to fill
+     * @param tile the new tile ID
+     */
+    public final void fill(final int column, final int row, final int columns, final int rows, final int tile) {
+        for (int c = column; c < column + columns; c++) {
+            for (int r = row; r < row + rows; r++) {
+                setTile(c, r, tile);
+            }
+        }
+    }
+
+    /**
+     * Sets the most pixels of composited chunk images kept by this TileLayer.
+     * The least recently drawn chunks are dropped first. Defaults to 16M
+     * pixels, 64MB at 4 bytes a pixel.
+     * @param pixels the most pixels of cached chunk images
+     */
+    public final void setChunkCacheBudget(final long pixels) {
+        HashMap<TileChunk, ChunkImage> evicted;
+        synchronized (chunkCache) {
+            chunkCacheBudget = Math.max(pixels, 1);
+            evicted = evict(null);
+        }
+        disposeEvicted(evicted);
+    }
+
+    /**
+     * Creates a new image to hold a composited chunk.
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return a new image for a chunk
+     */
+    protected abstract I createChunkImage(final int width, final int height);
+
+    /**
+     * Composites the tiles of the given chunk into the given image, replacing
+     * whatever it previously held. Called only when the chunk has changed, its
+     * image was dropped from the cache or the zoom it is drawn at has changed.
+     * @param image the image to draw the tiles into
+     * @param chunk the chunk whose tiles are to be drawn
+     * @param reduction the chunk is to be drawn at 1 / (1 << reduction) of its
+     * size, 0 for full size
+     */
+    protected abstract void renderChunk(final I image, final TileChunk chunk, final int reduction);
+
+    /**
+     * Draws a composited chunk image to the screen.
+     * @param graphics the Graphics object with which to draw
+     * @param image the composited chunk image
+     * @param bounds the size and location of the chunk on the screen
+     */
+    protected abstract void drawChunkImage(final Graphics graphics, final I image, final Bounds bounds);
+
+    /**
+     * Stub method called when a chunk image is dropped from the cache. Implement
+     * as needed to release resources held by the image.
+     * @param image the image being dropped
+     */
+    protected void disposeChunkImage(final I image) {
+    }
+
+    /**
+     * Resizes the chunk table to cover the Zone, keeping the tiles already set.
+     */
+    final void allocateChunks() {
+        final ZoneData zoneData = getData();
+        final int tiles = 1 << chunkShift;
+        final int chunkSize = tileSize << chunkShift;
+        final int columns = (zoneData.getZoneWidth() + chunkSize - 1) / chunkSize;
+        final int rows = (zoneData.getZoneHeight() + chunkSize - 1) / chunkSize;
+        final TileChunk[][] newChunks = new TileChunk[columns][rows];
+        for (int i = 0; i < newChunks.length; i++) {
+            for (int n = 0; n < newChunks[i].length; n++) {
+                if (i < chunks.length && n < chunks[i].length) {
+                    newChunks[i][n] = chunks[i][n];
+                } else {
+                    newChunks[i][n] = new TileChunk(this, i * chunkSize, n * chunkSize, tiles, tiles);
+                }
+            }
+        }
+        chunks = newChunks;
+    }
+
+    /**
+     * Drops all cached chunk images.
+     */
+    final void clearChunkCache() {
+        final HashMap<TileChunk, ChunkImage> evicted = new HashMap<TileChunk, ChunkImage>();
+        synchronized (chunkCache) {
+            evicted.putAll(chunkCache);
+            chunkCache.clear();
+            cachedPixels = 0;
+        }
+        disposeEvicted(evicted);
+    }
+
+    /**
+     * Adds the non-empty chunks intersecting the given area to the given Scene.
+     * @param scene the Scene to add the chunks to
+     * @param x the x coordinate of the area
+     * @param y the y coordinate of the area
+     * @param width the width of the area
+     * @param height the height of the area
+     */
+    final void addVisibleChunks(final Scene scene, final int x, final int y, final int width, final int height) {
+        final TileChunk[][] c = chunks;
+        if (c.length == 0 || width <= 0 || height <= 0) {
+            return;
+        }
+        final int shift = chunkShift + tileShift;
+        final int x1 = Math.max(0, x >> shift);
+        final int y1 = Math.max(0, y >> shift);
+        final int x2 = Math.min(c.length - 1, (x + width - 1) >> shift);
+        final int y2 = Math.min(c[0].length - 1, (y + height - 1) >> shift);
+        for (int i = x1; i <= x2; i++) {
+            for (int n = y1; n <= y2; n++) {
+                if (!c[i][n].isEmpty()) {
+                    scene.add(c[i][n]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the given chunk, compositing it first if its cached image is
+     * missing, out of date or of the wrong reduction for the size it is drawn
+     * at. Only the chunk is locked while compositing, so other chunks can be
+     * drawn meanwhile.
+     * @param graphics the Graphics object with which to draw
+     * @param chunk the chunk to draw
+     * @param bounds the size and location of the chunk on the screen
+     */
+    final void drawChunk(final Graphics graphics, final TileChunk chunk, final Bounds bounds) {
+        final int reduction = getReduction(chunk, bounds);
+        HashMap<TileChunk, ChunkImage> evicted = null;
+        synchronized (chunk) {
+            ChunkImage cached;
+            synchronized (chunkCache) {
+                cached = chunkCache.get(chunk);
+                if (cached != null && cached.reduction != reduction) {
+                    chunkCache.remove(chunk);
+                    cachedPixels -= cached.pixels;
+                }
+            }
+            if (cached != null && cached.reduction != reduction) {
+                disposeChunkImage(cached.image);
+                cached = null;
+            }
+            if (cached == null) {
+                final int width = Math.max(1, chunk.getWidth() >> reduction);
+                final int height = Math.max(1, chunk.getHeight() >> reduction);
+                cached = new ChunkImage(createChunkImage(width, height), reduction, (long) width * height);
+                chunk.dirty = true;
+                synchronized (chunkCache) {
+                    chunkCache.put(chunk, cached);
+                    cachedPixels += cached.pixels;
+                    evicted = evict(chunk);
+                }
+            }
+            if (chunk.dirty) {
+                //clear first so that edits made while rendering mark it again
+                chunk.dirty = false;
+                renderChunk(cached.image, chunk, reduction);
+            }
+            drawChunkImage(graphics, cached.image, bounds);
+        }
+        //disposed of outside this chunk's lock, as each needs its own chunk's lock
+        disposeEvicted(evicted);
+    }
+
+    /**
+     * Gets the number of times the given chunk can be halved in size and still
+     * be at least as large as it is drawn.
+     * @param chunk the chunk to draw
+     * @param bounds the size and location of the chunk on the screen
+     * @return the reduction to composite the chunk at
+     */
+    private final int getReduction(final TileChunk chunk, final Bounds bounds) {
+        int reduction = 0;
+        final int width = Math.max(1, bounds.width), height = Math.max(1, bounds.height);
+        while (chunk.getWidth() >> (reduction + 1) >= width && chunk.getHeight() >> (reduction + 1) >= height) {
+            reduction++;
+        }
+        return reduction;
+    }
+
+    /**
+     * Removes the least recently drawn chunk images from the cache until it is
+     * within its budget. Must be called holding the cache's lock.
+     * @param keep a chunk whose image is not to be removed, null for none
+     * @return the removed chunks and their images, null if none
+     */
+    private final HashMap<TileChunk, ChunkImage> evict(final TileChunk keep) {
+        HashMap<TileChunk, ChunkImage> evicted = null;
+        final Iterator<Map.Entry<TileChunk, ChunkImage>> i = chunkCache.entrySet().iterator();
+        while (cachedPixels > chunkCacheBudget && i.hasNext()) {
+            final Map.Entry<TileChunk, ChunkImage> entry = i.next();
+            final TileChunk chunk = entry.getKey();
+            if (chunk != keep) {
+                if (evicted == null) {
+                    evicted = new HashMap<TileChunk, ChunkImage>();
+                }
+                evicted.put(chunk, entry.getValue());
+                cachedPixels -= entry.getValue().pixels;
+                i.remove();
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Disposes of the given evicted chunk images, each once no other thread is
+     * drawing its chunk.
+     * @param evicted the evicted chunks and their images, may be null
+     */
+    private final void disposeEvicted(final HashMap<TileChunk, ChunkImage> evicted) {
+        if (evicted == null) {
+            return;
+        }
+        for (final Map.Entry<TileChunk, ChunkImage> entry : evicted.entrySet()) {
+            synchronized (entry.getKey()) {
+                disposeChunkImage(entry.getValue().image);
+            }
+        }
+    }
+
+    /**
+     * Gets the chunk containing the given column and row.
+     * @param column the column of the tile
+     * @param row the row of the tile
+     * @return the chunk containing the tile, null if it is out of range
+     */
+    private final TileChunk chunkOf(final int column, final int row) {
+        final TileChunk[][] c = chunks;
+        final int i = column >> chunkShift;
+        final int n = row >> chunkShift;
+        if (column < 0 || row < 0 || i >= c.length || n >= c[i].length) {
+            return null;
+        }
+        return c[i][n];
+    }
+
+    /**
+     * A cached chunk image and the reduction it was composited at.
+     */
+    private final class ChunkImage {
+
+        private final I image;
+        private final int reduction;
+        private final long pixels;
+
+        /**
+         * Constructor
+         * @param image the composited image
+         * @param reduction the reduction the image is composited at
+         * @param pixels the number of pixels in the image
+         */
+        private ChunkImage(final I image, final int reduction, final long pixels) {
+            this.image = image;
+            this.reduction = reduction;
+            this.pixels = pixels;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+import java.util.ArrayList;
+
+/**
+ * A hierarchical timing wheel used to wake sleeping sprites. Each level has 64
+ * slots, with each slot of a level covering a full turn of the level beneath
+ * it, so scheduling and waking a sprite costs the same however far away its
+ * wake up is. Deadlines beyond the top level wait in an overflow list.
+ *
+ * Each entry records the wake up tick it was scheduled for. A sprite that goes
+ * back to sleep or wakes early leaves a stale entry, whose tick no longer
+ * matches the sprite's, that is dropped when it is cascaded or comes due.
+ * @author Blinz
+ */
+final class TimingWheel {
+
+    private final static int LEVELS = 4;
+    private final static int SLOT_BITS = 6;
+    private final static int SLOTS = 1 << SLOT_BITS;
+    private final static int SLOT_MASK = SLOTS - 1;
+    /**
+     * The value of BaseSprite.sleep for sprites sleeping on this wheel.
+     */
+    private final byte id;
+    @SuppressWarnings("unchecked")
+    private final ArrayList<Entry>[][] slots = new ArrayList[LEVELS][SLOTS];
+    private final ArrayList<Entry> overflow = new ArrayList<Entry>();
+    private final ArrayList<Entry> cascade = new ArrayList<Entry>();
+    /**
+     * Entries that have been dropped, ready to be reused.
+     */
+    private final ArrayList<Entry> freeEntries = new ArrayList<Entry>();
+    /**
+     * The last tick processed.
+     */
+    private long now = 0;
+
+    /**
+     * Constructor
+     * @param id the value of BaseSprite.sleep for sprites sleeping on this wheel
+     */
+    TimingWheel(final byte id) {
+        this.id = id;
+        for (int i = 0; i < LEVELS; i++) {
+            for (int n = 0; n < SLOTS; n++) {
+                slots[i][n] = new ArrayList<Entry>();
+            }
+        }
+    }
+
+    /**
+     * Gets the value of BaseSprite.sleep for sprites sleeping on this wheel.
+     * @return the ID of this wheel
+     */
+    final byte getID() {
+        return id;
+    }
+
+    /**
+     * Schedules the given sprite to be woken at its wake tick.
+     * @param sprite the sprite to schedule
+     */
+    final synchronized void schedule(final BaseSprite sprite) {
+        final Entry entry = freeEntries.isEmpty() ? new Entry() : freeEntries.remove(freeEntries.size() - 1);
+        entry.sprite = sprite;
+        entry.tick = sprite.wakeTick;
+        insert(entry, now + 1);
+    }
+
+    /**
+     * Processes every tick up to and including the given one, adding the
+     * sprites that are due to the given list.
+     * @param tick the tick to advance to
+     * @param woken the list to add the woken sprites to
+     */
+    final synchronized void advance(final long tick, final ArrayList<BaseSprite> woken) {
+        while (now < tick) {
+            now++;
+            //move the entries of the higher levels down as the lower levels wrap
+            for (int level = 1; level < LEVELS; level++) {
+                if (((now >> (SLOT_BITS * (level - 1))) & SLOT_MASK) != 0) {
+                    break;
+                }
+                final ArrayList<Entry> slot = slots[level][(int) ((now >> (SLOT_BITS * level)) & SLOT_MASK)];
+                cascade.addAll(slot);
+                slot.clear();
+                if (level == LEVELS - 1) {
+                    cascade.addAll(overflow);
+                    overflow.clear();
+                }
+                for (int i = 0; i < cascade.size(); i++) {
+                    final Entry entry = cascade.get(i);
+                    if (isCurrent(entry)) {
+                        insert(entry, now);
+                    } else {
+                        free(entry);
+                    }
+                }
+                cascade.clear();
+            }
+
+            final ArrayList<Entry> slot = slots[0][(int) (now & SLOT_MASK)];
+            for (int i = 0; i < slot.size(); i++) {
+                final Entry entry = slot.get(i);
+                if (isCurrent(entry)) {
+                    entry.sprite.sleep = BaseSprite.AWAKE;
+                    woken.add(entry.sprite);
+                }
+                free(entry);
+            }
+            slot.clear();
+        }
+    }
+
+    /**
+     * Trims the size of the slot lists.
+     */
+    final synchronized void trimLists() {
+        for (int i = 0; i < LEVELS; i++) {
+            for (int n = 0; n < SLOTS; n++) {
+                slots[i][n].trimToSize();
+            }
+        }
+        overflow.trimToSize();
+        freeEntries.clear();
+        freeEntries.trimToSize();
+    }
+
+    /**
+     * Indicates whether or not the given entry is the one the sprite is
+     * sleeping on.
+     * @param entry the entry to check
+     * @return true if the sprite still sleeps on this wheel until the tick of
+     * the entry, false if the entry is stale
+     */
+    private final boolean isCurrent(final Entry entry) {
+        return entry.sprite.sleep == id && entry.sprite.wakeTick == entry.tick;
+    }
+
+    /**
+     * Makes the given entry available for reuse.
+     * @param entry the entry to free
+     */
+    private final void free(final Entry entry) {
+        entry.sprite = null;
+        freeEntries.add(entry);
+    }
+
+    /**
+     * Puts the given entry in the slot for its wake tick.
+     * @param entry the entry to insert
+     * @param earliest the earliest tick that has not yet been processed
+     */
+    private final void insert(final Entry entry, final long earliest) {
+        final long deadline = entry.tick < earliest ? earliest : entry.tick;
+        final long delta = deadline - now;
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < (1L << (SLOT_BITS * (level + 1)))) {
+                slots[level][(int) ((deadline >> (SLOT_BITS * level)) & SLOT_MASK)].add(entry);
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+
+    /**
+     * A sprite scheduled on the wheel and the tick it was scheduled for.
+     */
+    private final static class Entry {
+
+        private BaseSprite sprite;
+        private long tick;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+/**
+ * An interface for receiving the events of a TriggerRegion. The methods are
+ * called during the post update from any of the Zone's threads, so changes to
+ * sprites should be left to the next update.
+ * @author Blinz
+ */
+public interface TriggerListener {
+
+    /**
+     * Called when a sprite enters the given region.
+     * @param region the region
+     * @param sprite the sprite that entered
+     */
+    public void enteredRegion(TriggerRegion region, BaseSprite sprite);
+
+    /**
+     * Called when a sprite leaves the given region or its Zone.
+     * @param region the region
+     * @param sprite the sprite that left
+     */
+    public void leftRegion(TriggerRegion region, BaseSprite sprite);
+}
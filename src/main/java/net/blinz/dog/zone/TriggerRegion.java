@@ -0,0 +1,88 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+import net.blinz.core.util.Bounds;
+
+/**
+ * A fixed area of a Zone that tells its listener when sprites of a given type
+ * enter or leave it, for doors, capture zones and the like. Regions are kept
+ * by the Sector holding their top left corner and evaluated by it in the post
+ * update, looking only at the sprites that moved or arrived nearby that cycle.
+ * @author Blinz
+ */
+public final class TriggerRegion extends AreaWatcher {
+
+    private final int x, y, width, height;
+    private final TriggerListener listener;
+    /**
+     * The Sector this region is kept by, null if it is not in a Zone.
+     */
+    Sector sector;
+
+    /**
+     * Constructor
+     * @param x the x coordinate of the region
+     * @param y the y coordinate of the region
+     * @param width the width of the region
+     * @param height the height of the region
+     * @param filter the class or interface of the sprites to watch for, null for all
+     * @param listener the listener to notify of sprites entering and leaving
+     */
+    public TriggerRegion(final int x, final int y, final int width, final int height,
+            final Class<?> filter, final TriggerListener listener) {
+        super(filter);
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.listener = listener;
+    }
+
+    /**
+     * Gets the Bounds of this region.
+     * @return a new Bounds object representing the area of this region
+     */
+    public final Bounds getBounds() {
+        return new Bounds(x, y, width, height);
+    }
+
+    /**
+     * Finds the sprites that entered or left this region since its last update
+     * and notifies the listener.
+     * @param zoneData the ZoneData of the Zone
+     */
+    final void update(final ZoneData zoneData) {
+        update(zoneData, false, x, y, width, height);
+    }
+
+    @Override
+    final boolean covers(final BaseSprite sprite) {
+        return Bounds.intersects(x, y, width, height,
+                sprite.getX(), sprite.getY(), sprite.getWidth(), sprite.getHeight());
+    }
+
+    @Override
+    final void entered(final BaseSprite sprite) {
+        listener.enteredRegion(this, sprite);
+    }
+
+    @Override
+    final void left(final BaseSprite sprite) {
+        listener.leftRegion(this, sprite);
+    }
+}
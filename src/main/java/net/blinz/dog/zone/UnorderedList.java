@@ -16,6 +16,7 @@
  */
 package net.blinz.dog.zone;
 
+import java.util.Collection;
 import java.util.Vector;
 
 /**
@@ -61,6 +62,16 @@ final class UnorderedList<E> {
         }
     }
     
+    /**
+     * Adds all of the given elements to this list.
+     * @param elements the elements to be added to this list
+     */
+    final void addAll(final Collection<? extends E> elements) {
+        synchronized (this.elements) {
+            this.elements.addAll(elements);
+        }
+    }
+
     /**
      * Removes the sprite at the given location by moving the sprite at the end
      * of list to the specified location.
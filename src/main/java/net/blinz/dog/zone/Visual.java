@@ -0,0 +1,46 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+import net.blinz.core.graphics.Graphics;
+import net.blinz.core.util.Bounds;
+
+/**
+ * An immutable picture of how a sprite looks at a given moment. Visuals are
+ * recorded into a Camera's Scene when it is generated and replayed by the
+ * renderer, so they must not refer to any state of the sprite that can still
+ * change. A Visual may be shared by any number of sprites and Scenes.
+ * @author Blinz
+ */
+public abstract class Visual {
+
+    /**
+     * Draws this Visual.
+     * @param g the Graphics object with which to draw
+     * @param bounds the size and location of the sprite on the screen
+     */
+    public abstract void draw(final Graphics g, final Bounds bounds);
+
+    /**
+     * Stub method called after draw when the sprite is selected by the Camera
+     * drawing it. Implement as needed to draw a selection indicator.
+     * @param g the Graphics object with which to draw
+     * @param bounds the size and location of the sprite on the screen
+     */
+    public void drawSelectionIndicator(final Graphics g, final Bounds bounds) {
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Dog - A project for making highly scalable non-clustered game and simulation environments.
+ * Copyright (C) 2009-2010 BlinzProject <gtalent2@gmail.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as
+ * published by the Free Software Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.dog.zone;
+
+/**
+ * An interface for sprites that are drawn from a recorded Visual instead of by
+ * their own draw methods. The Visual is taken when a Camera generates its
+ * Scene, so the renderer never touches the sprite while the Zone updates it.
+ * @author Blinz
+ */
+public interface VisualSprite {
+
+    /**
+     * Gets the Visual representing how this sprite currently looks. Called on
+     * the thread updating the Camera, once per frame the sprite is visible, so
+     * it should return a cached Visual until the look of the sprite changes.
+     * @return the current Visual of this sprite, null to be drawn live by the
+     * sprite's own draw method
+     */
+    public Visual getVisual();
+}
@@ -19,7 +19,11 @@ package net.blinz.dog.zone;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import net.blinz.core.util.Bounds;
 import net.blinz.core.util.Position;
 import net.blinz.core.util.Size;
 import net.blinz.dog.input.ClickEvent;
@@ -82,12 +86,24 @@ public class Zone extends ZoneObject {
     }
 
     /**
-     * Adds new Cameras to this Zone.
+     * Recalculates how often each Sector updates its distant sprites.
+     */
+    private class ClassifySectors extends SynchronizedTask {
+
+        @Override
+        protected void run() {
+            getData().classifySectors();
+        }
+    }
+
+    /**
+     * Removes the Cameras that have left this Zone and adds new ones.
      */
     private class AddCameras extends SynchronizedTask {
 
         @Override
         protected void run() {
+            removeCameras();
             addCameras();
         }
     }
@@ -104,15 +120,92 @@ public class Zone extends ZoneObject {
     }
 
     /**
-     * Deletes sprites marked for deletion.
+     * Moves the sprites marked for deletion to the deletion buffer.
      */
-    private class DeleteSprites extends Task {
+    private class DrainDeletedSprites extends SynchronizedTask {
 
         @Override
         protected void run() {
-            for (BaseSprite s = getData().spritesToDelete.remove(0);
-                    s != null; s = getData().spritesToDelete.remove(0)) {
-                removeSprite(s);
+            final UnorderedList<BaseSprite> list = getData().spritesToDelete;
+            deleteBuffer.clear();
+            while (!list.isEmpty()) {
+                deleteBuffer.add(list.remove(list.size() - 1));
+            }
+        }
+    }
+
+    /**
+     * Moves the sprites waiting in the ingest queue to the ingest buffer.
+     */
+    private class DrainIngestQueue extends SynchronizedTask {
+
+        @Override
+        protected void run() {
+            final ConcurrentLinkedQueue<BaseSprite> queue = getData().ingestQueue;
+            ingestBuffer.clear();
+            for (BaseSprite s = queue.poll(); s != null; s = queue.poll()) {
+                ingestBuffer.add(s);
+            }
+        }
+    }
+
+    /**
+     * Advances the TimingWheels to the next cycle and buckets the sprites that
+     * woke by Sector.
+     */
+    private class WakeSprites extends SynchronizedTask {
+
+        @Override
+        protected void run() {
+            final ZoneData zoneData = getData();
+            zoneData.cycleWheel.advance(zoneData.zoneCycles + 1, wokenSprites);
+            zoneData.timeWheel.advance(zoneData.zoneTime, wokenSprites);
+            for (int i = 0; i < wokenSprites.size(); i++) {
+                final BaseSprite sprite = wokenSprites.get(i);
+                zoneData.getSectorOf(sprite.getX(), sprite.getY()).queueWokenSprite(sprite);
+            }
+            wokenSprites.clear();
+        }
+    }
+
+    /**
+     * Buckets the sprites in the deletion buffer by Sector. Every thread takes
+     * blocks of the buffer until it is empty.
+     */
+    private class BucketDeletedSprites extends Task {
+
+        @Override
+        protected void run() {
+            final ZoneData zoneData = getData();
+            final int size = deleteBuffer.size();
+            for (int start = deleteBuffer.nextBlock(); start < size; start = deleteBuffer.nextBlock()) {
+                final int end = Math.min(start + deleteBuffer.getBlockSize(), size);
+                for (int i = start; i < end; i++) {
+                    final BaseSprite sprite = deleteBuffer.take(i);
+                    zoneData.getSectorOf(sprite.getX(), sprite.getY()).queueDeletedSprite(sprite);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers the sprites in the ingest buffer and buckets them by Sector.
+     * Every thread takes blocks of the buffer until it is empty.
+     */
+    private class BucketIngestedSprites extends Task {
+
+        @Override
+        protected void run() {
+            final ZoneData zoneData = getData();
+            final int size = ingestBuffer.size();
+            for (int start = ingestBuffer.nextBlock(); start < size; start = ingestBuffer.nextBlock()) {
+                final int end = Math.min(start + ingestBuffer.getBlockSize(), size);
+                for (int i = start; i < end; i++) {
+                    final BaseSprite sprite = ingestBuffer.take(i);
+                    zoneData.registerZoneObject(sprite);
+                    zoneData.registerSprite(sprite);
+                    zoneData.getSectorOf(sprite.getX(), sprite.getY()).queueIngestedSprite(sprite);
+                }
             }
         }
     }
@@ -128,6 +221,38 @@ public class Zone extends ZoneObject {
         }
     }
 
+    /**
+     * Drops the ProximitySensors whose owners left the Zone and resets the
+     * sensor index.
+     */
+    private class ResetSensorIndex extends SynchronizedTask {
+
+        @Override
+        protected void run() {
+            final Vector<ProximitySensor> sensors = getData().proximitySensors;
+            for (int i = sensors.size() - 1; i > -1; i--) {
+                if (!sensors.get(i).isAlive(getData())) {
+                    sensors.remove(i);
+                }
+            }
+            currentSensor = 0;
+        }
+    }
+
+    /**
+     * Evaluates the ProximitySensors.
+     */
+    private class UpdateProximitySensors extends Task {
+
+        @Override
+        protected void run() {
+            final ZoneData zoneData = getData();
+            for (ProximitySensor sensor = nextSensor(); sensor != null; sensor = nextSensor()) {
+                sensor.update(zoneData);
+            }
+        }
+    }
+
     /**
      * Deletes sprites marked for deletion. Must come before PostUpdateSectors.
      */
@@ -137,7 +262,7 @@ public class Zone extends ZoneObject {
         protected void run() {
             //Update Cameras
             for (BaseCamera camera = nextCamera(); camera != null; camera = nextCamera()) {
-                camera.internalUpdate();
+                camera.runUpdate();
             }
         }
     }
@@ -179,13 +304,20 @@ public class Zone extends ZoneObject {
             }
         }
     }
+    /**
+     * The number of sprites each thread buckets at a time when adding and
+     * deleting sprites.
+     */
+    private final static int BUCKET_BLOCK_SIZE = 512;
     /**
      * Used to track the next Camera to be updated.
      */
     private int currentCamera = 0;
+    private int currentSensor = 0;
     private Size size;
     private final Vector<BaseCamera> cameras = new Vector<BaseCamera>();
     private final Vector<BaseCamera> camerasToAdd = new Vector<BaseCamera>();
+    private final Vector<BaseCamera> camerasToRemove = new Vector<BaseCamera>();
     private String name = "Zone";
     private long initTime;
     private long pauseTime = 0;
@@ -198,8 +330,26 @@ public class Zone extends ZoneObject {
     private boolean isRunning = false;
     private TaskExecuter zoneProcessor;
     private final TaskList sectorUpdate = new TaskList();
+    private final TaskList sectorCommit = new TaskList();
+    private final TaskList sectorIntegration = new TaskList();
     private final TaskList sectorPostUpdate = new TaskList();
     private final TaskList updatingObjects = new TaskList();
+    private final TaskList particleUpdate = new TaskList();
+    /**
+     * The ParticleUpdater of each ParticleEmitter, including those not yet
+     * picked up by particleUpdate.
+     */
+    private final HashMap<ParticleEmitter, ParticleUpdater> particleUpdaters = new HashMap<ParticleEmitter, ParticleUpdater>();
+    private final TaskList sectorSpriteManagement = new TaskList();
+    /**
+     * The sprites being deleted this cycle.
+     */
+    private final SpriteBuffer deleteBuffer = new SpriteBuffer(BUCKET_BLOCK_SIZE);
+    /**
+     * The sprites being ingested this cycle.
+     */
+    private final SpriteBuffer ingestBuffer = new SpriteBuffer(BUCKET_BLOCK_SIZE);
+    private final ArrayList<BaseSprite> wokenSprites = new ArrayList<BaseSprite>();
 
     /**
      * Constructor
@@ -305,6 +455,282 @@ public class Zone extends ZoneObject {
         getData().addSprite(sprite);
     }
 
+    /**
+     * Queues the given sprite to be added to this Zone at the end of the
+     * current cycle. Unlike addSprite this may be called from any thread,
+     * such as a network or loading thread, while the Zone is running.
+     * @param sprite the sprite to be added to the Zone
+     */
+    public final void queueSprite(final BaseSprite sprite) {
+        getData().ingestQueue.add(sprite);
+    }
+
+    /**
+     * Queues the given sprites to be added to this Zone at the end of the
+     * current cycle. The sprites are bucketed by Sector across all of the
+     * Zone's threads and added to each Sector in one pass, so this is much
+     * faster than adding a large number of sprites one at a time. May be
+     * called from any thread.
+     * @param sprites the sprites to be added to the Zone
+     */
+    public final void addSprites(final Collection<? extends BaseSprite> sprites) {
+        getData().ingestQueue.addAll(sprites);
+    }
+
+    /**
+     * Adds a sprite of the given class to this Zone at the given location. If
+     * the class implements RecyclableSprite a previously deleted sprite of the
+     * class is reset and reused when available, otherwise a new one is created.
+     * @param spriteClass the class of the sprite, must have a no argument constructor
+     * @param x the x coordinate of the sprite
+     * @param y the y coordinate of the sprite
+     * @return the sprite added, null if the class could not be instantiated
+     */
+    public final <T extends BaseSprite> T addSprite(final Class<T> spriteClass, final int x, final int y) {
+        return getData().addSprite(spriteClass, x, y);
+    }
+
+    /**
+     * Gets the sprite the given handle refers to.
+     * @param handle a handle from BaseSprite.getHandle()
+     * @return the sprite, null if it has left this Zone
+     */
+    public final BaseSprite getSprite(final long handle) {
+        return getData().spriteTable.get(handle);
+    }
+
+    /**
+     * Gets the sprites in this Zone of the given class or interface, including
+     * subclasses. The index is kept up to date as sprites come and go, the
+     * first request for a type builds it from the sprites already present.
+     * @param type the class or interface of the sprites
+     * @return the SpriteIndex of the sprites of the given type
+     */
+    public final <T> SpriteIndex<T> getSprites(final Class<T> type) {
+        return getData().getTypeIndex(type);
+    }
+
+    /**
+     * Gets the sprites in this Zone carrying the given tag.
+     * @param tag the tag
+     * @return the SpriteIndex of the sprites carrying the given tag
+     */
+    public final SpriteIndex<BaseSprite> getTaggedSprites(final String tag) {
+        return getData().getTagIndex(tag);
+    }
+
+    /**
+     * Sets the number of deleted sprites of the given RecyclableSprite class
+     * this Zone keeps for reuse. Defaults to 1024.
+     * @param spriteClass the class of the sprites
+     * @param capacity the number of sprites to keep, 0 to disable pooling for the class
+     */
+    public final <T extends BaseSprite & RecyclableSprite> void setSpritePoolCapacity(final Class<T> spriteClass,
+            final int capacity) {
+        getData().spritePool.setCapacity(spriteClass, capacity);
+    }
+
+    /**
+     * Sets how often the sprites far from every Camera of this Zone are
+     * updated. Sectors within the given distance of a Sector covered by a
+     * Camera are updated every cycle, beyond it the time between updates of
+     * their ElapsedUpdatingSprites doubles with each Sector of distance up to
+     * the given maximum. Other UpdatingSprites are always updated every cycle.
+     * Disabled by default.
+     * @param fullRateDistance the distance in Sectors from the nearest Camera
+     * within which sprites are updated every cycle
+     * @param maxInterval the most cycles allowed between updates of distant
+     * sprites, 1 to disable
+     */
+    public final void setUpdateLevelOfDetail(final int fullRateDistance, final int maxInterval) {
+        getData().setUpdateLevelOfDetail(fullRateDistance, maxInterval);
+    }
+
+    /**
+     * Adds the given ProximitySensor to this Zone. Its owner must already be in
+     * this Zone, and the sensor is dropped when the owner is deleted. Sprites
+     * given to queueSprite or addSprites are only in the Zone once the cycle
+     * they were queued in has ended.
+     * @param sensor the ProximitySensor to add
+     * @throws IllegalStateException if the owner of the sensor is not in this Zone
+     */
+    public final void addProximitySensor(final ProximitySensor sensor) {
+        final long handle = sensor.getOwner().getHandle();
+        if (getData().spriteTable.get(handle) != sensor.getOwner()) {
+            throw new IllegalStateException("The owner of a ProximitySensor must be in the Zone before the sensor.");
+        }
+        sensor.ownerHandle = handle;
+        getData().proximitySensors.add(sensor);
+    }
+
+    /**
+     * Removes the given ProximitySensor from this Zone.
+     * @param sensor the ProximitySensor to remove
+     * @return true if the sensor was in this Zone, false otherwise
+     */
+    public final boolean removeProximitySensor(final ProximitySensor sensor) {
+        return getData().proximitySensors.remove(sensor);
+    }
+
+    /**
+     * Posts the given Message to the sprite the given handle refers to. Safe to
+     * call from any thread, the Message is delivered at the start of the next
+     * update of the sprite's Sector. It is dropped if the sprite has left this
+     * Zone or does not accept it.
+     * @param handle the handle of the recipient
+     * @param message the message
+     * @return true if the message was posted, false if it was dropped
+     */
+    public final boolean postMessage(final long handle, final Message message) {
+        return getData().postMessage(handle, message);
+    }
+
+    /**
+     * Gets a Message of the given class, reusing a delivered one if the class
+     * has a message pool capacity.
+     * @param messageClass the class of the message, must have a no argument constructor
+     * @return a message of the given class, null if it could not be instantiated
+     */
+    public final <T extends Message> T obtainMessage(final Class<T> messageClass) {
+        return getData().messagePool.obtain(messageClass);
+    }
+
+    /**
+     * Sets the number of delivered Messages of the given class this Zone keeps
+     * for reuse. Messages are not pooled unless their class is given a capacity.
+     * @param messageClass the class of the messages
+     * @param capacity the number of messages to keep, 0 to disable pooling for the class
+     */
+    public final void setMessagePoolCapacity(final Class<? extends Message> messageClass, final int capacity) {
+        getData().messagePool.setCapacity(messageClass, capacity);
+    }
+
+    /**
+     * Broadcasts the given message to the sprites in the given area. Each
+     * Sector delivers it to its sprites at the start of its next update.
+     * @param message the message
+     * @param x the x coordinate of the area
+     * @param y the y coordinate of the area
+     * @param width the width of the area
+     * @param height the height of the area
+     * @param filter the class or interface of the sprites to deliver to, null for all
+     */
+    public final void broadcast(final Object message, final int x, final int y, final int width, final int height,
+            final Class<?> filter) {
+        new Broadcast(message, x, y, width, height, -1, filter).post(getData());
+    }
+
+    /**
+     * Broadcasts the given message to the sprites within the given distance of
+     * the given point. Each Sector delivers it to its sprites at the start of
+     * its next update.
+     * @param message the message
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @param radius the distance from the point
+     * @param filter the class or interface of the sprites to deliver to, null for all
+     */
+    public final void broadcast(final Object message, final int x, final int y, final int radius,
+            final Class<?> filter) {
+        new Broadcast(message, x - radius, y - radius, 2 * radius, 2 * radius, radius, filter).post(getData());
+    }
+
+    /**
+     * Adds the given TriggerRegion to this Zone. It is kept by the Sector
+     * holding its top left corner and evaluated in that Sector's post update.
+     * @param region the TriggerRegion to add
+     */
+    public final synchronized void addTriggerRegion(final TriggerRegion region) {
+        if (region.sector == null) {
+            final Bounds bounds = region.getBounds();
+            region.sector = getData().getSectorOfSafe(bounds.x, bounds.y);
+            region.sector.addTriggerRegion(region);
+            getData().triggerRegions.add(region);
+        }
+    }
+
+    /**
+     * Removes the given TriggerRegion from this Zone.
+     * @param region the TriggerRegion to remove
+     */
+    public final synchronized void removeTriggerRegion(final TriggerRegion region) {
+        if (region.sector != null) {
+            region.sector.removeTriggerRegion(region);
+            region.sector = null;
+            getData().triggerRegions.remove(region);
+        }
+    }
+
+    /**
+     * Sets whether or not sprites in this Zone are double buffered. In a double
+     * buffered Zone moves made during the update are staged and only committed
+     * once every Sector has been updated, so sprites always see each other's
+     * positions from the end of the previous cycle, whatever the number of
+     * threads. Only positions are buffered, sizes and layers change at once.
+     * Has no effect once the Zone has started.
+     * @param doubleBuffered true to double buffer sprite positions
+     */
+    public final synchronized void setDoubleBuffered(final boolean doubleBuffered) {
+        if (!isRunning) {
+            getData().doubleBuffered = doubleBuffered;
+        }
+    }
+
+    /**
+     * Adds the given TileLayer to this Zone. Its tiles are drawn by the Cameras
+     * of this Zone on the TileLayer's layer.
+     * @param layer the TileLayer to be added to the Zone
+     */
+    public final void addTileLayer(final TileLayer<?> layer) {
+        getData().addTileLayer(layer);
+    }
+
+    /**
+     * Removes the given TileLayer from this Zone.
+     * @param layer the TileLayer to be removed
+     * @return true if the given TileLayer was present, false otherwise
+     */
+    public final boolean removeTileLayer(final TileLayer<?> layer) {
+        return getData().removeTileLayer(layer);
+    }
+
+    /**
+     * Adds the given ParticleEmitter to this Zone. Its particles are moved
+     * every cycle after the Sectors are updated and are drawn by the Cameras
+     * of this Zone without ever joining a Sector. Adding an emitter that is
+     * already in this Zone does nothing.
+     * @param emitter the ParticleEmitter to be added
+     */
+    public final void addParticleEmitter(final ParticleEmitter emitter) {
+        synchronized (particleUpdaters) {
+            if (particleUpdaters.containsKey(emitter)) {
+                return;
+            }
+            getData().registerZoneObject(emitter);
+            final ParticleUpdater updater = new ParticleUpdater(emitter);
+            particleUpdaters.put(emitter, updater);
+            getData().particleEmitters.add(emitter);
+            particleUpdate.add(updater);
+        }
+    }
+
+    /**
+     * Removes the given ParticleEmitter from this Zone.
+     * @param emitter the ParticleEmitter to be removed
+     * @return true if the given emitter was present, false otherwise
+     */
+    public final boolean removeParticleEmitter(final ParticleEmitter emitter) {
+        synchronized (particleUpdaters) {
+            final ParticleUpdater updater = particleUpdaters.remove(emitter);
+            if (updater == null) {
+                return false;
+            }
+            particleUpdate.remove(updater);
+            getData().particleEmitters.remove(emitter);
+            return true;
+        }
+    }
+
     /**
      * Creates threads for processing this Zone.
      * @param threads number of threads dedicated to this Zone
@@ -333,17 +759,34 @@ public class Zone extends ZoneObject {
             zoneProcessor.addTask(updatingObjects);
             zoneProcessor.addTask(new AddCameras());
             zoneProcessor.addTask(new UserListenerUpdate());
+            zoneProcessor.addTask(new ClassifySectors());
             zoneProcessor.addTask(new Barrier());
 
             zoneProcessor.addTask(sectorUpdate);
+            zoneProcessor.addTask(new Barrier());
+            if (getData().doubleBuffered) {
+                zoneProcessor.addTask(sectorCommit);
+                zoneProcessor.addTask(new Barrier());
+            }
+            zoneProcessor.addTask(sectorIntegration);
             zoneProcessor.addTask(new ResetCameraIndex());
+            zoneProcessor.addTask(new ResetSensorIndex());
             zoneProcessor.addTask(new Barrier());
             zoneProcessor.addTask(new UpdateCameras());
             zoneProcessor.addTask(new Barrier());
             zoneProcessor.addTask(sectorPostUpdate);
+            zoneProcessor.addTask(particleUpdate);
+            zoneProcessor.addTask(new UpdateProximitySensors());
 
             zoneProcessor.addTask(new Barrier());
-            zoneProcessor.addTask(new DeleteSprites());
+            zoneProcessor.addTask(new DrainDeletedSprites());
+            zoneProcessor.addTask(new DrainIngestQueue());
+            zoneProcessor.addTask(new WakeSprites());
+            zoneProcessor.addTask(new Barrier());
+            zoneProcessor.addTask(new BucketDeletedSprites());
+            zoneProcessor.addTask(new BucketIngestedSprites());
+            zoneProcessor.addTask(new Barrier());
+            zoneProcessor.addTask(sectorSpriteManagement);
             zoneProcessor.addTask(new Sleep());
 
             generateSectorGroups(getData().sectors);
@@ -546,6 +989,23 @@ public class Zone extends ZoneObject {
         cameras.remove(camera);
     }
 
+    /**
+     * Queues the given camera, which has let go of its Sectors, to be removed
+     * from this Zone at the start of the next cycle.
+     * @param camera the camera to remove
+     */
+    final void queueCameraRemoval(final BaseCamera camera) {
+        camerasToRemove.add(camera);
+    }
+
+    /**
+     * Indicates whether or not this Zone is being processed by its threads.
+     * @return true if this Zone is running, false otherwise
+     */
+    final boolean isRunning() {
+        return isRunning;
+    }
+
     /**
      * Trims excessively large lists.
      */
@@ -558,27 +1018,32 @@ public class Zone extends ZoneObject {
      * Adds new Cameras to this Zone.
      */
     private final void addCameras() {
-        for (int i = 0; i < camerasToAdd.size(); i++) {
-            cameras.add(camerasToAdd.get(i));
-            getData().registerZoneObject(camerasToAdd.remove(i));
+        for (int i = camerasToAdd.size() - 1; i > -1; i--) {
+            final BaseCamera camera = camerasToAdd.get(i);
+            //a Camera still leaving another Zone joins once it has left
+            if (!camera.isDropping()) {
+                camerasToAdd.remove(i);
+                cameras.add(camera);
+                getData().registerZoneObject(camera);
+            }
         }
     }
 
     /**
-     * Deletes the given sprite from this Zone.
-     * @param sprite the sprite to remove from the Zone
+     * Removes the Cameras that have let go of their Sectors from this Zone.
      */
-    private final void removeSprite(final BaseSprite sprite) {
-        final Sector tl = getData().getSectorOf(sprite.getX(), sprite.getY());
-        tl.removeSprite(sprite);
-        sprite.onDelete();
-        sprite.dropZone(this);
+    private final void removeCameras() {
+        for (int i = camerasToRemove.size() - 1; i > -1; i--) {
+            camerasToRemove.remove(i).finishDrop(this);
+        }
     }
 
     /**
      * Refactors the Sectors to fit the current size of this Zone.
      */
     private final synchronized void refactorSectors() {
+        //the chunk grid follows the Zone's size, not its Sector count
+        getData().allocateTileLayers();
         if (size.width == 0 || size.height == 0) {
             return;
         }
@@ -604,6 +1069,7 @@ public class Zone extends ZoneObject {
         }
 
         getData().sectors = sectors;
+        getData().cameraCoverageChanged = true;
 
         for (int i = 0; i < newSectors.size(); i++) {
             getData().registerZoneObject(newSectors.get(i));
@@ -655,6 +1121,17 @@ public class Zone extends ZoneObject {
         }
     }
 
+    /**
+     * Gets the next ProximitySensor to be evaluated.
+     * @return the next ProximitySensor to be evaluated, null if there are none left
+     */
+    private final synchronized ProximitySensor nextSensor() {
+        final Vector<ProximitySensor> sensors = getData().proximitySensors;
+        synchronized (sensors) {
+            return currentSensor < sensors.size() ? sensors.get(currentSensor++) : null;
+        }
+    }
+
     /**
      * Divides the Sectors into groups for the threads to manage.
      * @param sectors the lists of Sectors
@@ -665,7 +1142,10 @@ public class Zone extends ZoneObject {
 
         final ArrayList<Sector> group = new ArrayList<Sector>();
         final ArrayList<UpdateSectors> updates = new ArrayList<UpdateSectors>();
+        final ArrayList<CommitSectors> commits = new ArrayList<CommitSectors>();
+        final ArrayList<IntegrateSectors> integrations = new ArrayList<IntegrateSectors>();
         final ArrayList<PostUpdateSectors> postUpdates = new ArrayList<PostUpdateSectors>();
+        final ArrayList<ManageSectorSprites> managers = new ArrayList<ManageSectorSprites>();
         int sectorCount = 0;
         while (index.x < sectors.length) {
             while (index.y < sectors[index.x].length) {
@@ -673,7 +1153,10 @@ public class Zone extends ZoneObject {
                 sectorCount++;
                 if (group.size() == sectorsPerThread) {
                     updates.add(new UpdateSectors(group));
+                    commits.add(new CommitSectors(group));
+                    integrations.add(new IntegrateSectors(group));
                     postUpdates.add(new PostUpdateSectors(group));
+                    managers.add(new ManageSectorSprites(group));
                     group.clear();
                 }
                 index.y++;
@@ -683,15 +1166,30 @@ public class Zone extends ZoneObject {
         }
         if (!group.isEmpty()) {
             updates.add(new UpdateSectors(group));
+            commits.add(new CommitSectors(group));
+            integrations.add(new IntegrateSectors(group));
             postUpdates.add(new PostUpdateSectors(group));
+            managers.add(new ManageSectorSprites(group));
         }
         sectorUpdate.clear();
         for (int i = 0; i < updates.size(); i++) {
             sectorUpdate.add(updates.get(i));
         }
+        sectorCommit.clear();
+        for (int i = 0; i < commits.size(); i++) {
+            sectorCommit.add(commits.get(i));
+        }
+        sectorIntegration.clear();
+        for (int i = 0; i < integrations.size(); i++) {
+            sectorIntegration.add(integrations.get(i));
+        }
         sectorPostUpdate.clear();
         for (int i = 0; i < postUpdates.size(); i++) {
             sectorPostUpdate.add(postUpdates.get(i));
         }
+        sectorSpriteManagement.clear();
+        for (int i = 0; i < managers.size(); i++) {
+            sectorSpriteManagement.add(managers.get(i));
+        }
     }
 }
@@ -16,6 +16,13 @@
  */
 package net.blinz.dog.zone;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import net.blinz.core.util.Size;
 import net.blinz.dog.util.User;
 
@@ -56,6 +63,91 @@ final class ZoneData {
      * A list of the User to sprite input associations in the Zone.
      */
     final UserListenerCatalog userListeners = new UserListenerCatalog();
+    /**
+     * The TileLayers of the Zone.
+     */
+    final Vector<TileLayer<?>> tileLayers = new Vector<TileLayer<?>>();
+    /**
+     * The ParticleEmitters of the Zone.
+     */
+    final Vector<ParticleEmitter> particleEmitters = new Vector<ParticleEmitter>();
+    /**
+     * The ProximitySensors of the Zone.
+     */
+    final Vector<ProximitySensor> proximitySensors = new Vector<ProximitySensor>();
+    /**
+     * The TriggerRegions of the Zone.
+     */
+    final Vector<TriggerRegion> triggerRegions = new Vector<TriggerRegion>();
+    /**
+     * Sprites waiting to be added to the Zone in the ingest stage. Any thread
+     * may add to it without locking.
+     */
+    final ConcurrentLinkedQueue<BaseSprite> ingestQueue = new ConcurrentLinkedQueue<BaseSprite>();
+    /**
+     * The IDs of the sprites in the Zone.
+     */
+    final SpriteTable spriteTable = new SpriteTable();
+    /**
+     * The SpriteIndexes of the sprite types requested so far, guarded by its
+     * own monitor.
+     */
+    private final HashMap<Class<?>, SpriteIndex<?>> typeIndexes = new HashMap<Class<?>, SpriteIndex<?>>();
+    /**
+     * The type SpriteIndexes each sprite class belongs in, built as needed.
+     * The map is never changed once published, it is replaced under the
+     * typeIndexes monitor so registering and releasing sprites can read it
+     * without locking.
+     */
+    private volatile HashMap<Class<?>, SpriteIndex<?>[]> classIndexes = new HashMap<Class<?>, SpriteIndex<?>[]>();
+    /**
+     * Incremented whenever a type SpriteIndex is created, so sprites being
+     * registered or released at the same time can tell they missed it.
+     */
+    private volatile int typeGeneration = 0;
+    /**
+     * The SpriteIndexes of the tags used so far.
+     */
+    private final ConcurrentHashMap<String, SpriteIndex<BaseSprite>> tagIndexes = new ConcurrentHashMap<String, SpriteIndex<BaseSprite>>();
+    /**
+     * Wakes sprites sleeping until a given Zone cycle.
+     */
+    final TimingWheel cycleWheel = new TimingWheel((byte) 1);
+    /**
+     * Wakes sprites sleeping until a given Zone time.
+     */
+    final TimingWheel timeWheel = new TimingWheel((byte) 2);
+    /**
+     * Set when a Sector gains its first or loses its last Camera, so that the
+     * Sectors' update rates are recalculated.
+     */
+    volatile boolean cameraCoverageChanged = true;
+    /**
+     * Indicates that sprites stage their moves during the update and the moves
+     * are committed together once every Sector has been updated.
+     */
+    boolean doubleBuffered = false;
+    /**
+     * The distance in Sectors from the nearest Camera within which sprites are
+     * updated every cycle.
+     */
+    private int fullRateDistance = Integer.MAX_VALUE;
+    /**
+     * The most cycles allowed between updates of distant sprites.
+     */
+    private int maxUpdateInterval = 1;
+    /**
+     * Used to calculate each Sector's distance from the nearest Camera.
+     */
+    private int[][] cameraDistances = new int[0][0];
+    /**
+     * Deleted RecyclableSprites kept for reuse.
+     */
+    final SpritePool spritePool = new SpritePool();
+    /**
+     * The delivered Messages waiting for reuse.
+     */
+    final MessagePool messagePool = new MessagePool();
     private String zoneName;
     private Zone zone;
     private boolean paused = false;
@@ -165,10 +257,171 @@ final class ZoneData {
      */
     final void addSprite(final BaseSprite sprite) {
         registerZoneObject(sprite);
+        registerSprite(sprite);
         final Sector tl = getSectorOf(sprite.getX(), sprite.getY());
         tl.addSprite(sprite);
     }
 
+    /**
+     * Adds a sprite of the given class to the Zone at the given location,
+     * reusing a deleted one if the pool has one.
+     * @param spriteClass the class of the sprite, must have a no argument constructor
+     * @param x the x coordinate of the sprite
+     * @param y the y coordinate of the sprite
+     * @return the sprite added, null if the class could not be instantiated
+     */
+    final <T extends BaseSprite> T addSprite(final Class<T> spriteClass, int x, int y) {
+        T sprite = spritePool.obtain(spriteClass);
+        if (sprite != null) {
+            ((RecyclableSprite) sprite).reset();
+        } else {
+            try {
+                sprite = spriteClass.newInstance();
+            } catch (InstantiationException ex) {
+                Logger.getLogger(ZoneData.class.getName()).log(Level.SEVERE, null, ex);
+                return null;
+            } catch (IllegalAccessException ex) {
+                Logger.getLogger(ZoneData.class.getName()).log(Level.SEVERE, null, ex);
+                return null;
+            }
+        }
+
+        //ensure the location is within bounds
+        if (x < 0) {
+            x = 0;
+        } else if (x + sprite.getWidth() > zoneSize.width) {
+            x = zoneSize.width - sprite.getWidth();
+        }
+        if (y < 0) {
+            y = 0;
+        } else if (y + sprite.getHeight() > zoneSize.height) {
+            y = zoneSize.height - sprite.getHeight();
+        }
+        sprite.updateX(x);
+        sprite.updateY(y);
+        addSprite(sprite);
+        return sprite;
+    }
+
+    /**
+     * Sets how often the ElapsedUpdatingSprites far from every Camera are updated.
+     * @param fullRateDistance the distance in Sectors from the nearest Camera
+     * within which sprites are updated every cycle
+     * @param maxInterval the most cycles allowed between updates of distant sprites
+     */
+    final void setUpdateLevelOfDetail(final int fullRateDistance, final int maxInterval) {
+        this.fullRateDistance = fullRateDistance < 0 ? 0 : fullRateDistance;
+        maxUpdateInterval = maxInterval < 1 ? 1 : maxInterval;
+        cameraCoverageChanged = true;
+    }
+
+    /**
+     * Recalculates the update interval of every Sector from its distance to
+     * the nearest Sector covered by a Camera, if the coverage changed.
+     */
+    final void classifySectors() {
+        if (!cameraCoverageChanged) {
+            return;
+        }
+        cameraCoverageChanged = false;
+        final Sector[][] s = sectors;
+        final int width = s.length, height = s[0].length;
+        if (maxUpdateInterval == 1) {
+            for (int i = 0; i < width; i++) {
+                for (int n = 0; n < height; n++) {
+                    s[i][n].updateInterval = 1;
+                }
+            }
+            return;
+        }
+
+        if (cameraDistances.length != width || cameraDistances[0].length != height) {
+            cameraDistances = new int[width][height];
+        }
+        final int[][] d = cameraDistances;
+        for (int i = 0; i < width; i++) {
+            for (int n = 0; n < height; n++) {
+                d[i][n] = s[i][n].isWatched() ? 0 : width + height;
+            }
+        }
+        //two pass distance transform, counting diagonal steps as one Sector
+        for (int n = 0; n < height; n++) {
+            for (int i = 0; i < width; i++) {
+                int v = d[i][n];
+                if (i > 0) {
+                    v = Math.min(v, d[i - 1][n] + 1);
+                }
+                if (n > 0) {
+                    v = Math.min(v, d[i][n - 1] + 1);
+                    if (i > 0) {
+                        v = Math.min(v, d[i - 1][n - 1] + 1);
+                    }
+                    if (i < width - 1) {
+                        v = Math.min(v, d[i + 1][n - 1] + 1);
+                    }
+                }
+                d[i][n] = v;
+            }
+        }
+        for (int n = height - 1; n > -1; n--) {
+            for (int i = width - 1; i > -1; i--) {
+                int v = d[i][n];
+                if (i < width - 1) {
+                    v = Math.min(v, d[i + 1][n] + 1);
+                }
+                if (n < height - 1) {
+                    v = Math.min(v, d[i][n + 1] + 1);
+                    if (i < width - 1) {
+                        v = Math.min(v, d[i + 1][n + 1] + 1);
+                    }
+                    if (i > 0) {
+                        v = Math.min(v, d[i - 1][n + 1] + 1);
+                    }
+                }
+                d[i][n] = v;
+            }
+        }
+
+        for (int i = 0; i < width; i++) {
+            for (int n = 0; n < height; n++) {
+                final int excess = d[i][n] - fullRateDistance;
+                s[i][n].updateInterval = excess <= 0 ? 1 : Math.min(maxUpdateInterval, 1 << Math.min(excess, 30));
+            }
+        }
+    }
+
+    /**
+     * Adds the given TileLayer to the Zone that this ZoneData is for.
+     * @param layer the TileLayer to be added to the Zone
+     */
+    final void addTileLayer(final TileLayer<?> layer) {
+        registerZoneObject(layer);
+        layer.allocateChunks();
+        tileLayers.add(layer);
+    }
+
+    /**
+     * Removes the given TileLayer from the Zone that this ZoneData is for.
+     * @param layer the TileLayer to be removed from the Zone
+     * @return true if the given TileLayer was present, false otherwise
+     */
+    final boolean removeTileLayer(final TileLayer<?> layer) {
+        if (tileLayers.remove(layer)) {
+            layer.clearChunkCache();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Resizes the TileLayers to match the current size of the Zone.
+     */
+    final void allocateTileLayers() {
+        for (int i = 0; i < tileLayers.size(); i++) {
+            tileLayers.get(i).allocateChunks();
+        }
+    }
+
     /**
      * Get a reference to the sprites listening to input from users.
      * @return a reference to the sprites listening to input from users.
@@ -293,6 +546,10 @@ final class ZoneData {
      */
     final void trimLists() {
         spritesToDelete.trimToSize();
+        spritePool.trimLists();
+        messagePool.trimLists();
+        cycleWheel.trimLists();
+        timeWheel.trimLists();
         for (int i = 0; i < sectors.length; i++) {
             for (int n = 0; n < sectors[i].length; n++) {
                 sectors[i][n].trimLists();
@@ -301,6 +558,186 @@ final class ZoneData {
         userListeners.trimLists();
     }
 
+    /**
+     * Posts the given Message to the mailbox of the sprite the given handle
+     * refers to, and has the sprite's Sector deliver it in its next update.
+     * @param handle the handle of the recipient
+     * @param message the message
+     * @return true if the message was posted, false if it was dropped
+     */
+    final boolean postMessage(final long handle, final Message message) {
+        final BaseSprite sprite = spriteTable.get(handle);
+        if (!(sprite instanceof MessageReceiver) || !accepts((MessageReceiver) sprite, message)) {
+            messagePool.recycle(message);
+            return false;
+        }
+        message.recipient = handle;
+        if (sprite.pushMessage(message)) {
+            getSectorOf(sprite.getX(), sprite.getY()).queueMailRecipient(sprite);
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether or not the given receiver accepts the given Message.
+     * @param receiver the receiver
+     * @param message the message
+     * @return true if the receiver accepts messages of the message's class
+     */
+    private final boolean accepts(final MessageReceiver receiver, final Message message) {
+        final Class<?>[] accepted = receiver.getAcceptedMessages();
+        for (int i = 0; i < accepted.length; i++) {
+            if (accepted[i].isInstance(message)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indicates whether or not the Sectors need to record the sprites that
+     * move, which they do while there are ProximitySensors or TriggerRegions.
+     * @return true if moves are to be recorded, false otherwise
+     */
+    final boolean tracksMoves() {
+        return !proximitySensors.isEmpty() || !triggerRegions.isEmpty();
+    }
+
+    /**
+     * Gives the given sprite an ID, adds it to the type SpriteIndexes it
+     * belongs in and indexes the tags it was given beforehand. If a type SpriteIndex is created meanwhile the sprite is
+     * added again, which the SpriteIndexes ignore for members.
+     * @param sprite the sprite entering the Zone
+     */
+    final void registerSprite(final BaseSprite sprite) {
+        int generation = typeGeneration;
+        sprite.lastUpdateTime = zoneTime;
+        spriteTable.register(sprite);
+        sprite.indexPendingTags();
+        while (true) {
+            final SpriteIndex<?>[] indexes = getClassIndexes(sprite.getClass());
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i].add(sprite);
+            }
+            if (generation == typeGeneration) {
+                return;
+            }
+            generation = typeGeneration;
+        }
+    }
+
+    /**
+     * Removes the given sprite from every SpriteIndex and frees its ID. The ID
+     * is only freed once no type SpriteIndex was created while the sprite was
+     * being removed, since a new one may have picked the sprite up.
+     * @param sprite the sprite leaving the Zone
+     */
+    final void releaseSprite(final BaseSprite sprite) {
+        sprite.clearTags();
+        while (true) {
+            final int generation = typeGeneration;
+            final SpriteIndex<?>[] indexes = getClassIndexes(sprite.getClass());
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i].remove(sprite);
+            }
+            synchronized (spriteTable) {
+                if (generation == typeGeneration) {
+                    spriteTable.release(sprite);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the SpriteIndex of the sprites of the given type, creating it from
+     * the sprites already in the Zone if it is new.
+     * @param type the class or interface of the sprites
+     * @return the SpriteIndex of the sprites of the given type
+     */
+    @SuppressWarnings("unchecked")
+    final <T> SpriteIndex<T> getTypeIndex(final Class<T> type) {
+        synchronized (typeIndexes) {
+            SpriteIndex<T> index = (SpriteIndex<T>) typeIndexes.get(type);
+            if (index == null) {
+                index = new SpriteIndex<T>();
+                //no sprite can be registered or released while the index is
+                //published and filled, those that were in progress retry
+                synchronized (spriteTable) {
+                    typeIndexes.put(type, index);
+                    classIndexes = new HashMap<Class<?>, SpriteIndex<?>[]>();
+                    typeGeneration++;
+                    for (int id = 0; id < spriteTable.capacity(); id++) {
+                        final BaseSprite sprite = spriteTable.get(id);
+                        if (type.isInstance(sprite)) {
+                            index.add(sprite);
+                        }
+                    }
+                }
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Gets the SpriteIndex of the sprites carrying the given tag, creating it
+     * if the tag has not been used yet.
+     * @param tag the tag
+     * @return the SpriteIndex of the sprites carrying the given tag
+     */
+    final SpriteIndex<BaseSprite> getTagIndex(final String tag) {
+        SpriteIndex<BaseSprite> index = tagIndexes.get(tag);
+        if (index == null) {
+            final SpriteIndex<BaseSprite> created = new SpriteIndex<BaseSprite>();
+            index = tagIndexes.putIfAbsent(tag, created);
+            if (index == null) {
+                index = created;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Gets the SpriteIndex of the sprites carrying the given tag without
+     * creating it.
+     * @param tag the tag
+     * @return the SpriteIndex of the sprites carrying the given tag, null if
+     * the tag has not been used yet
+     */
+    final SpriteIndex<BaseSprite> findTagIndex(final String tag) {
+        return tagIndexes.get(tag);
+    }
+
+    /**
+     * Gets the type SpriteIndexes that sprites of the given class belong in.
+     * Only takes a lock the first time a class is seen after a type SpriteIndex
+     * was created.
+     * @param clss the class of the sprites
+     * @return the type SpriteIndexes for the class
+     */
+    private final SpriteIndex<?>[] getClassIndexes(final Class<?> clss) {
+        final SpriteIndex<?>[] cached = classIndexes.get(clss);
+        if (cached != null) {
+            return cached;
+        }
+        synchronized (typeIndexes) {
+            SpriteIndex<?>[] indexes = classIndexes.get(clss);
+            if (indexes == null) {
+                final ArrayList<SpriteIndex<?>> list = new ArrayList<SpriteIndex<?>>();
+                for (final Class<?> type : typeIndexes.keySet()) {
+                    if (type.isAssignableFrom(clss)) {
+                        list.add(typeIndexes.get(type));
+                    }
+                }
+                indexes = list.toArray(new SpriteIndex<?>[list.size()]);
+                final HashMap<Class<?>, SpriteIndex<?>[]> map = new HashMap<Class<?>, SpriteIndex<?>[]>(classIndexes);
+                map.put(clss, indexes);
+                classIndexes = map;
+            }
+            return indexes;
+        }
+    }
+
     /**
      * Registers the given ZoneObject with this ZoneObject's Zone.
      * A ZoneObject can only be a member of one Zone at a time.